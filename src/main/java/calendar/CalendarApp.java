@@ -1,20 +1,46 @@
 package calendar;
 
 import calendar.controller.CalendarController;
+import calendar.controller.CommandJournal;
 import calendar.model.Calendar;
 import calendar.view.mode.Mode;
 import calendar.view.mode.ModeFactory;
 
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.ZoneId;
 
 /** Main application class. */
 public class CalendarApp {
-  /** Main method that starts the CalendarController. */
-  public static void main(String[] args) {
+  /**
+   * Main method that starts the CalendarController. An optional snapshot path restores the
+   * calendars saved there on startup and saves them back on exit. With "--journal dir" instead,
+   * the app recovers from the journal in that directory and records every mutating command there.
+   */
+  public static void main(String[] args) throws Exception {
     Calendar calendar = new Calendar("Default Calendar", ZoneId.of("America/New_York"));
     CalendarController controller = new CalendarController(calendar);
+    CommandJournal journal = null;
+    String snapshot = null;
+    if (args.length > 1 && args[0].equals("--journal")) {
+      journal = CommandJournal.open(Paths.get(args[1]), controller);
+      System.out.println("Recovered " + journal.getReplayed() + " journaled command(s).");
+    } else if (args.length > 0) {
+      snapshot = args[0];
+      if (Files.exists(Paths.get(snapshot))) {
+        controller.loadSnapshot(snapshot);
+      }
+    }
     ModeFactory modeFactory = new ModeFactory(controller);
     Mode mode = modeFactory.getMode();
-    mode.execute();
+    if (mode != null) {
+      mode.execute();
+    }
+    if (journal != null) {
+      journal.close();
+    }
+    if (snapshot != null) {
+      controller.saveSnapshot(snapshot);
+    }
   }
 }
@@ -3,14 +3,26 @@ package calendar.controller;
 import calendar.controller.export.CSVCalendarExporter;
 import calendar.controller.export.CalendarExporter;
 import calendar.model.Calendar;
+import calendar.model.FreeBusy;
+import calendar.model.TimeSlot;
 import calendar.model.event.Event;
 import calendar.model.event.SingleEvent;
 import calendar.model.event.RecurringEvent;
+import calendar.model.store.StorageEngine;
+import calendar.model.store.StringDictionary;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -24,15 +36,18 @@ public class CalendarController {
   private DateTimeFormatter dateFormatter;
   private DateTimeFormatter timeFormatter;
   private CalendarExporter exporter;
+  // Records mutating commands when set; null when the app runs without a journal.
+  private volatile CommandJournal journal;
 
   /**
    * Constructs a CalendarController with the specified default calendar.
    */
   public CalendarController(Calendar defaultCalendar) {
     this.activeCalendar = defaultCalendar;
-    calendarManager = new CalendarManager();
-    // Add the default calendar to the manager.
-    calendarManager.createCalendar(defaultCalendar.getName(), defaultCalendar.getTimezone().getId());
+    // Calendars created later share the default calendar's string dictionary.
+    calendarManager = new CalendarManager(defaultCalendar.getStringDictionary());
+    // Register the default calendar itself, so it is reachable by name.
+    calendarManager.addCalendar(defaultCalendar);
     dtFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
     dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
@@ -43,10 +58,17 @@ public class CalendarController {
    * Creates a new calendar with the given name and timezone.
    */
   public void createCalendar(String calName, String timezone) throws Exception {
+    createCalendar(calName, timezone, StorageEngine.INDEXED.name());
+  }
+
+  /**
+   * Creates a new calendar with the given name and timezone using the named storage engine.
+   */
+  public void createCalendar(String calName, String timezone, String storage) throws Exception {
     if (calendarManager.getCalendar(calName) != null) {
       throw new Exception("Calendar with name " + calName + " already exists.");
     }
-    calendarManager.createCalendar(calName, timezone);
+    calendarManager.createCalendar(calName, timezone, StorageEngine.parse(storage));
   }
 
   /**
@@ -59,6 +81,17 @@ public class CalendarController {
     calendarManager.editCalendar(calName, property, newValue);
   }
 
+  /**
+   * Describes the busy bitmap of the named calendar and its memory cost.
+   */
+  public String getBusyBitmapReport(String calName) throws Exception {
+    Calendar cal = calendarManager.getCalendar(calName);
+    if (cal == null) {
+      throw new Exception("Calendar " + calName + " not found.");
+    }
+    return cal.busyBitmapReport();
+  }
+
   /**
    * Sets the active calendar by its name.
    */
@@ -71,83 +104,80 @@ public class CalendarController {
   }
 
   /**
-   * Creates a single timed event.
+   * Creates a single timed event and returns its id.
    */
-  public void createSingleEvent(String name, String startStr, String endStr, String description, String location, boolean isPublic, boolean autoDecline) throws Exception {
+  public String createSingleEvent(String name, String startStr, String endStr, String description, String location, boolean isPublic, boolean autoDecline) throws Exception {
     LocalDateTime start = LocalDateTime.parse(startStr, dtFormatter);
     LocalDateTime end = LocalDateTime.parse(endStr, dtFormatter);
     SingleEvent event = new SingleEvent(name, start, end, description, location, isPublic);
-    activeCalendar.addEvent(event, autoDecline);
+    return idLabel(activeCalendar.addEvent(event, autoDecline), 1);
   }
 
   /**
-   * Creates a recurring timed event with a fixed number of occurrences.
+   * Creates a recurring timed event with a fixed number of occurrences and returns the ids of its occurrences.
    */
-  public void createRecurringEventOccurrences(String name, String startStr, String endStr, String description, String location, boolean isPublic, String weekdaysStr, int occurrences, boolean autoDecline) throws Exception {
+  public String createRecurringEventOccurrences(String name, String startStr, String endStr, String description, String location, boolean isPublic, String weekdaysStr, int occurrences, boolean autoDecline) throws Exception {
     if (occurrences < 0) {
       throw new IllegalArgumentException("Occurrence count cannot be negative.");
     }
     if (occurrences == 0) {
-      return;
+      return idLabel(0, 0);
     }
     LocalDateTime start = LocalDateTime.parse(startStr, dtFormatter);
     LocalDateTime end = LocalDateTime.parse(endStr, dtFormatter);
     Set<DayOfWeek> weekdays = parseWeekdays(weekdaysStr);
     RecurringEvent recurringEvent = new RecurringEvent(name, start, end, description, location, isPublic, weekdays, occurrences);
-    for (SingleEvent instance : recurringEvent.getEventInstances()) {
-      activeCalendar.addEvent(instance, autoDecline);
-    }
+    return idLabel(activeCalendar.addSeries(recurringEvent, autoDecline),
+        recurringEvent.getOccurrenceCount());
   }
 
   /**
-   * Creates a recurring timed event until a specified date-time.
+   * Creates a recurring timed event until a specified date-time and returns the ids of its occurrences.
    */
-  public void createRecurringEventUntil(String name, String startStr, String endStr, String description, String location, boolean isPublic, String weekdaysStr, String untilStr, boolean autoDecline) throws Exception {
+  public String createRecurringEventUntil(String name, String startStr, String endStr, String description, String location, boolean isPublic, String weekdaysStr, String untilStr, boolean autoDecline) throws Exception {
     LocalDateTime start = LocalDateTime.parse(startStr, dtFormatter);
     LocalDateTime end = LocalDateTime.parse(endStr, dtFormatter);
     LocalDateTime until = LocalDateTime.parse(untilStr, dtFormatter);
     Set<DayOfWeek> weekdays = parseWeekdays(weekdaysStr);
     RecurringEvent recurringEvent = new RecurringEvent(name, start, end, description, location, isPublic, weekdays, until);
-    for (SingleEvent instance : recurringEvent.getEventInstances()) {
-      activeCalendar.addEvent(instance, autoDecline);
-    }
+    return idLabel(activeCalendar.addSeries(recurringEvent, autoDecline),
+        recurringEvent.getOccurrenceCount());
   }
 
   /**
-   * Creates a single all-day event.
+   * Creates a single all-day event and returns its id.
    */
-  public void createSingleAllDayEvent(String name, String dateStr, String description, String location, boolean isPublic, boolean autoDecline) throws Exception {
+  public String createSingleAllDayEvent(String name, String dateStr, String description, String location, boolean isPublic, boolean autoDecline) throws Exception {
     LocalDate date = LocalDate.parse(dateStr, dateFormatter);
     LocalDateTime start = date.atTime(0, 0);
     LocalDateTime end = date.atTime(23, 59);
     SingleEvent event = new SingleEvent(name, start, end, description, location, isPublic);
-    activeCalendar.addEvent(event, autoDecline);
+    return idLabel(activeCalendar.addEvent(event, autoDecline), 1);
   }
 
   /**
-   * Creates a recurring all-day event with a fixed number of occurrences.
+   * Creates a recurring all-day event with a fixed number of occurrences and returns the ids of its occurrences.
    */
-  public void createRecurringAllDayEventOccurrences(String name, String dateStr, String description, String location, boolean isPublic, String weekdaysStr, int occurrences, boolean autoDecline) throws Exception {
+  public String createRecurringAllDayEventOccurrences(String name, String dateStr, String description, String location, boolean isPublic, String weekdaysStr, int occurrences, boolean autoDecline) throws Exception {
     if (occurrences < 0) {
       throw new IllegalArgumentException("Occurrence count cannot be negative.");
     }
     if (occurrences == 0) {
-      return;
+      return idLabel(0, 0);
     }
     LocalDate date = LocalDate.parse(dateStr, dateFormatter);
     LocalDateTime start = date.atTime(0, 0);
     LocalDateTime end = date.atTime(23, 59);
     Set<DayOfWeek> weekdays = parseWeekdays(weekdaysStr);
     RecurringEvent recurringEvent = new RecurringEvent(name, start, end, description, location, isPublic, weekdays, occurrences);
-    for (SingleEvent instance : recurringEvent.getEventInstances()) {
-      activeCalendar.addEvent(instance, autoDecline);
-    }
+    return idLabel(activeCalendar.addSeries(recurringEvent, autoDecline),
+        recurringEvent.getOccurrenceCount());
   }
 
   /**
-   * Creates a recurring all-day event until a specified date.
+   * Creates a recurring all-day event until a specified date and returns the ids of its occurrences.
    */
-  public void createRecurringAllDayEventUntil(String name, String dateStr, String description, String location, boolean isPublic, String weekdaysStr, String untilDateStr, boolean autoDecline) throws Exception {
+  public String createRecurringAllDayEventUntil(String name, String dateStr, String description, String location, boolean isPublic, String weekdaysStr, String untilDateStr, boolean autoDecline) throws Exception {
     LocalDate date = LocalDate.parse(dateStr, dateFormatter);
     LocalDateTime start = date.atTime(0, 0);
     LocalDateTime end = date.atTime(23, 59);
@@ -155,9 +185,15 @@ public class CalendarController {
     LocalDateTime until = untilDate.atTime(23, 59);
     Set<DayOfWeek> weekdays = parseWeekdays(weekdaysStr);
     RecurringEvent recurringEvent = new RecurringEvent(name, start, end, description, location, isPublic, weekdays, until);
-    for (SingleEvent instance : recurringEvent.getEventInstances()) {
-      activeCalendar.addEvent(instance, autoDecline);
-    }
+    return idLabel(activeCalendar.addSeries(recurringEvent, autoDecline),
+        recurringEvent.getOccurrenceCount());
+  }
+
+  /**
+   * Returns the event with the given id in the active calendar, or null if there is none.
+   */
+  public Event findEventById(long id) {
+    return activeCalendar.findEventById(id);
   }
 
   /**
@@ -197,47 +233,86 @@ public class CalendarController {
    * Returns formatted events on the specified date.
    */
   public String getFormattedEventsOn(String dateStr) {
+    StringBuilder sb = new StringBuilder();
+    try {
+      printEventsOn(dateStr, sb);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Writes the events on the specified date to out as they are read from the calendar.
+   */
+  public void printEventsOn(String dateStr, Appendable out) throws IOException {
     LocalDate date = LocalDate.parse(dateStr, dateFormatter);
-    List<Event> events = activeCalendar.getEventsOn(date);
-    if (events.isEmpty()) {
-      return "No events on " + dateStr;
+    Iterator<Event> events = activeCalendar.iterateOn(date);
+    if (!events.hasNext()) {
+      out.append("No events on ").append(dateStr);
+      return;
     }
-    StringBuilder sb = new StringBuilder();
-    sb.append("Events on ").append(dateStr).append(":\n");
-    for (Event e : events) {
+    out.append("Events on ").append(dateStr).append(":\n");
+    while (events.hasNext()) {
+      Event e = events.next();
       boolean isAllDay = (e.getStart().getHour() == 0 && e.getStart().getMinute() == 0 &&
           e.getEnd().getHour() == 23 && e.getEnd().getMinute() == 59);
-      sb.append(" - ").append(e.getName());
+      out.append(" - ").append(e.getName());
       if (isAllDay) {
-        sb.append(" All Day Event ");
+        out.append(" All Day Event ");
       } else {
-        sb.append(" (").append(timeFormatter.format(e.getStart()))
+        out.append(" (").append(timeFormatter.format(e.getStart()))
             .append(" to ").append(timeFormatter.format(e.getEnd())).append(")");
       }
-      sb.append(" at ").append(e.getLocation()).append("\n");
+      out.append(" at ").append(e.getLocation()).append("\n");
     }
-    return sb.toString();
   }
 
   /**
    * Returns formatted events between two date-times.
    */
   public String getFormattedEventsBetween(String startStr, String endStr) {
+    StringBuilder sb = new StringBuilder();
+    try {
+      printEventsBetween(startStr, endStr, sb);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Writes the events between two date-times to out as they are read from the calendar.
+   */
+  public void printEventsBetween(String startStr, String endStr, Appendable out) throws IOException {
     LocalDateTime start = LocalDateTime.parse(startStr, dtFormatter);
     LocalDateTime end = LocalDateTime.parse(endStr, dtFormatter);
-    List<Event> eventsBetween = activeCalendar.getEventsBetween(start, end);
-    if (eventsBetween.isEmpty()) {
-      return "No events between " + startStr + " and " + endStr;
+    Iterator<Event> events = activeCalendar.iterateBetween(start, end);
+    if (!events.hasNext()) {
+      out.append("No events between ").append(startStr).append(" and ").append(endStr);
+      return;
     }
-    StringBuilder sb = new StringBuilder();
-    sb.append("Events from ").append(startStr).append(" to ").append(endStr).append(":\n");
-    for (Event e : eventsBetween) {
-      sb.append(" - ").append(e.getName())
+    out.append("Events from ").append(startStr).append(" to ").append(endStr).append(":\n");
+    while (events.hasNext()) {
+      Event e = events.next();
+      out.append(" - ").append(e.getName())
           .append(" (").append(timeFormatter.format(e.getStart()))
           .append(" to ").append(timeFormatter.format(e.getEnd()))
           .append(") at ").append(e.getLocation()).append("\n");
     }
-    return sb.toString();
+  }
+
+  /**
+   * Returns the event with the given id in the active calendar, formatted on one line.
+   */
+  public String getFormattedEventById(long id) throws Exception {
+    Event e = activeCalendar.findEventById(id);
+    if (e == null) {
+      throw new Exception("No event with id " + id + ".");
+    }
+    return "Event " + id + ": " + e.getName()
+        + " (" + dtFormatter.format(e.getStart()) + " to " + dtFormatter.format(e.getEnd())
+        + ") at " + e.getLocation();
   }
 
   /**
@@ -249,6 +324,61 @@ public class CalendarController {
     return "Status at " + dateTimeStr + ": " + (busy ? "Busy" : "Available");
   }
 
+  /**
+   * Returns the busy intervals and free gaps between two date-times.
+   */
+  public String getFreeBusy(String startStr, String endStr) {
+    LocalDateTime start = LocalDateTime.parse(startStr, dtFormatter);
+    LocalDateTime end = LocalDateTime.parse(endStr, dtFormatter);
+    FreeBusy freeBusy = activeCalendar.freeBusy(start, end);
+    StringBuilder sb = new StringBuilder();
+    sb.append("Free/busy from ").append(startStr).append(" to ").append(endStr).append(":\n");
+    int b = 0;
+    int f = 0;
+    List<TimeSlot> busy = freeBusy.getBusy();
+    List<TimeSlot> free = freeBusy.getFree();
+    while (b < busy.size() || f < free.size()) {
+      boolean nextIsBusy = f == free.size()
+          || (b < busy.size() && busy.get(b).getStart().isBefore(free.get(f).getStart()));
+      TimeSlot slot = nextIsBusy ? busy.get(b++) : free.get(f++);
+      sb.append(" - ").append(nextIsBusy ? "Busy" : "Free")
+          .append(" (").append(dtFormatter.format(slot.getStart()))
+          .append(" to ").append(dtFormatter.format(slot.getEnd())).append(")\n");
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns up to limit free slots of the given length common to the listed calendars, optionally
+   * within daily working hours given as HH:mm (both null for any time of day).
+   */
+  public String findCommonSlots(List<String> calendarNames, long durationMinutes, String startStr,
+      String endStr, String workStartStr, String workEndStr, int limit) {
+    LocalDateTime start = LocalDateTime.parse(startStr, dtFormatter);
+    LocalDateTime end = LocalDateTime.parse(endStr, dtFormatter);
+    LocalTime workStart = workStartStr == null ? null : LocalTime.parse(workStartStr, timeFormatter);
+    LocalTime workEnd = workEndStr == null ? null : LocalTime.parse(workEndStr, timeFormatter);
+    List<TimeSlot> slots = calendarManager.findCommonSlots(
+        calendarNames, start, end, durationMinutes, limit, workStart, workEnd);
+    if (slots.isEmpty()) {
+      return "No common free slots between " + startStr + " and " + endStr;
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append("Free slots for ").append(String.join(", ", calendarNames)).append(":\n");
+    for (TimeSlot slot : slots) {
+      sb.append(" - ").append(dtFormatter.format(slot.getStart()))
+          .append(" to ").append(dtFormatter.format(slot.getEnd())).append("\n");
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns the string dictionary shared by all calendars of this controller.
+   */
+  public StringDictionary getStringDictionary() {
+    return calendarManager.getStringDictionary();
+  }
+
   /**
    * Exports the active calendar using the configured exporter.
    */
@@ -256,6 +386,79 @@ public class CalendarController {
     return exporter.export(activeCalendar, fileName);
   }
 
+  /**
+   * Exports the events of the active calendar overlapping a window. The bounds are dates, taken
+   * from the start of the first day to the end of the last, or date-times.
+   */
+  public String exportCalendarBetween(String fileName, String startStr, String endStr)
+      throws Exception {
+    LocalDateTime start = startStr.contains("T") ? LocalDateTime.parse(startStr, dtFormatter)
+        : LocalDate.parse(startStr, dateFormatter).atStartOfDay();
+    LocalDateTime end = endStr.contains("T") ? LocalDateTime.parse(endStr, dtFormatter)
+        : LocalDate.parse(endStr, dateFormatter).atTime(23, 59);
+    if (end.isBefore(start)) {
+      throw new IllegalArgumentException("Export window ends before it starts.");
+    }
+    return exporter.export(activeCalendar, fileName, start, end);
+  }
+
+  /**
+   * Exports only the events of the active calendar changed since the last incremental export to
+   * the same file, or all of them the first time.
+   */
+  public String exportCalendarChanges(String fileName) throws Exception {
+    return exporter.exportChanges(activeCalendar, fileName);
+  }
+
+  /**
+   * Describes the last export: how many events it wrote and its throughput in events per second.
+   */
+  public String getLastExportReport() {
+    return exporter.describeLastExport();
+  }
+
+  /**
+   * Returns the name of the active calendar.
+   */
+  public String getActiveCalendarName() {
+    return activeCalendar.getName();
+  }
+
+  /**
+   * Returns the command journal recording this controller's mutating commands, or null.
+   */
+  public CommandJournal getJournal() {
+    return journal;
+  }
+
+  /**
+   * Sets the command journal that records this controller's mutating commands.
+   */
+  public void setJournal(CommandJournal journal) {
+    this.journal = journal;
+  }
+
+  /**
+   * Saves every calendar to a binary snapshot file and returns its absolute path.
+   */
+  public String saveSnapshot(String fileName) throws IOException {
+    Path path = Paths.get(fileName).toAbsolutePath();
+    calendarManager.saveSnapshot(path);
+    return path.toString();
+  }
+
+  /**
+   * Replaces every calendar with those saved in a snapshot file and returns how many were loaded.
+   * The active calendar stays selected by name if the snapshot has it; otherwise the first saved
+   * calendar becomes active.
+   */
+  public int loadSnapshot(String fileName) throws IOException {
+    List<Calendar> loaded = calendarManager.loadSnapshot(Paths.get(fileName));
+    Calendar active = calendarManager.getCalendar(activeCalendar.getName());
+    activeCalendar = active != null ? active : loaded.get(0);
+    return loaded.size();
+  }
+
   /**
    * Parses a string of weekdays into a Set of DayOfWeek.
    */
@@ -277,18 +480,16 @@ public class CalendarController {
   }
 
   /**
-   * Copies a single event from the active calendar to the target calendar with a new start time.
+   * Copies a single event from the active calendar to the target calendar with a new start time
+   * and returns the id of the copy.
    */
-  public void copyEvent(String eventName, String sourceDateTimeStr, String targetCalendarName, String targetDateTimeStr) throws Exception {
+  public String copyEvent(String eventName, String sourceDateTimeStr, String targetCalendarName, String targetDateTimeStr) throws Exception {
     LocalDateTime sourceDateTime = LocalDateTime.parse(sourceDateTimeStr, dtFormatter);
     Event eventToCopy = activeCalendar.findEventByNameAndStart(eventName, sourceDateTime);
     if (eventToCopy == null) {
       throw new Exception("Event " + eventName + " not found at " + sourceDateTimeStr);
     }
-    Calendar targetCal = calendarManager.getCalendar(targetCalendarName);
-    if (targetCal == null) {
-      throw new Exception("Target calendar " + targetCalendarName + " not found.");
-    }
+    Calendar targetCal = targetCalendar(targetCalendarName);
     LocalDateTime targetDateTime = LocalDateTime.parse(targetDateTimeStr, dtFormatter);
     long duration = java.time.Duration.between(eventToCopy.getStart(), eventToCopy.getEnd()).toMinutes();
     SingleEvent copiedEvent = new SingleEvent(
@@ -298,64 +499,76 @@ public class CalendarController {
         eventToCopy.getDescription(),
         eventToCopy.getLocation(),
         eventToCopy.isPublic());
-    targetCal.addEvent(copiedEvent, true);
+    return idLabel(targetCal.addEvents(Collections.singletonList(copiedEvent), true), 1);
   }
 
   /**
-   * Copies all events on the specified date from the active calendar to the target calendar with a new base date-time.
+   * Copies all events on the specified date from the active calendar to the target calendar with a new base date-time
+   * and returns the ids of the copies.
    */
-  public void copyEventsOn(String dateStr, String targetCalendarName, String targetDateTimeStr) throws Exception {
+  public String copyEventsOn(String dateStr, String targetCalendarName, String targetDateTimeStr) throws Exception {
     LocalDate date = LocalDate.parse(dateStr, dateFormatter);
     List<Event> eventsToCopy = activeCalendar.getEventsOn(date);
     if (eventsToCopy.isEmpty()) {
       throw new Exception("No events on " + dateStr + " to copy.");
     }
-    Calendar targetCal = calendarManager.getCalendar(targetCalendarName);
-    if (targetCal == null) {
-      throw new Exception("Target calendar " + targetCalendarName + " not found.");
-    }
+    Calendar targetCal = targetCalendar(targetCalendarName);
     LocalDateTime targetBase = LocalDateTime.parse(targetDateTimeStr, dtFormatter);
-    LocalDateTime earliest = eventsToCopy.stream().map(Event::getStart).min(LocalDateTime::compareTo).orElse(targetBase);
-    long offset = java.time.Duration.between(earliest, targetBase).toMinutes();
-    for (Event e : eventsToCopy) {
-      SingleEvent copiedEvent = new SingleEvent(
-          e.getName(),
-          e.getStart().plusMinutes(offset),
-          e.getEnd().plusMinutes(offset),
-          e.getDescription(),
-          e.getLocation(),
-          e.isPublic());
-      targetCal.addEvent(copiedEvent, true);
-    }
+    return copyShifted(eventsToCopy, targetBase, targetCal);
   }
 
   /**
-   * Copies all events between two dates from the active calendar to the target calendar starting at a new base date.
+   * Copies all events between two dates from the active calendar to the target calendar starting at a new base date
+   * and returns the ids of the copies.
    */
-  public void copyEventsBetween(String startDateStr, String endDateStr, String targetCalendarName, String targetDateStr) throws Exception {
+  public String copyEventsBetween(String startDateStr, String endDateStr, String targetCalendarName, String targetDateStr) throws Exception {
     LocalDateTime start = LocalDate.parse(startDateStr, dateFormatter).atStartOfDay();
     LocalDateTime end = LocalDate.parse(endDateStr, dateFormatter).atTime(23, 59);
     List<Event> eventsToCopy = activeCalendar.getEventsBetween(start, end);
     if (eventsToCopy.isEmpty()) {
       throw new Exception("No events between " + startDateStr + " and " + endDateStr + " to copy.");
     }
+    Calendar targetCal = targetCalendar(targetCalendarName);
+    LocalDateTime targetBase = LocalDate.parse(targetDateStr, dateFormatter).atStartOfDay();
+    return copyShifted(eventsToCopy, targetBase, targetCal);
+  }
+
+  /** Describes count consecutive event ids starting at first. */
+  private static String idLabel(long first, int count) {
+    if (count == 0) {
+      return "no ids";
+    }
+    return count == 1 ? "id " + first : "ids " + first + "-" + (first + count - 1);
+  }
+
+  /** Returns the named copy target, failing if there is no such calendar. */
+  private Calendar targetCalendar(String targetCalendarName) throws Exception {
     Calendar targetCal = calendarManager.getCalendar(targetCalendarName);
     if (targetCal == null) {
       throw new Exception("Target calendar " + targetCalendarName + " not found.");
     }
-    LocalDateTime targetBase = LocalDate.parse(targetDateStr, dateFormatter).atStartOfDay();
+    return targetCal;
+  }
+
+  /**
+   * Copies events into the target calendar, shifted so the earliest one starts at the target base.
+   * The copies are added as one atomic batch, so either all of them are copied or none are. The
+   * source events are a snapshot read earlier; writers may change the source in between.
+   */
+  private String copyShifted(List<Event> eventsToCopy, LocalDateTime targetBase, Calendar targetCal) throws Exception {
     LocalDateTime earliest = eventsToCopy.stream().map(Event::getStart).min(LocalDateTime::compareTo).orElse(targetBase);
     long offset = java.time.Duration.between(earliest, targetBase).toMinutes();
+    List<Event> copies = new ArrayList<>(eventsToCopy.size());
     for (Event e : eventsToCopy) {
-      SingleEvent copiedEvent = new SingleEvent(
+      copies.add(new SingleEvent(
           e.getName(),
           e.getStart().plusMinutes(offset),
           e.getEnd().plusMinutes(offset),
           e.getDescription(),
           e.getLocation(),
-          e.isPublic());
-      targetCal.addEvent(copiedEvent, true);
+          e.isPublic()));
     }
+    return idLabel(targetCal.addEvents(copies, true), copies.size());
   }
 
 }
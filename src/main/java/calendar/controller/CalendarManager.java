@@ -1,49 +1,119 @@
 package calendar.controller;
 
 import calendar.model.Calendar;
+import calendar.model.TimeSlot;
+import calendar.model.store.StorageEngine;
+import calendar.model.store.StringDictionary;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.ZoneId;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages multiple calendars by providing methods to create, edit, and retrieve calendars.
+ *
+ * <p>Lookups by name are lock-free. Creating, registering and renaming calendars are serialized
+ * with each other, so a rename is atomic with respect to every other change of names. Work on the
+ * calendars themselves relies on each calendar's own locking.
  */
 public class CalendarManager {
-  private Map<String, Calendar> calendars = new HashMap<>();
+  private final Map<String, Calendar> calendars = new ConcurrentHashMap<>();
+  private final Object namesLock = new Object();
+  // Shared by every managed calendar, so equal event strings are stored once across calendars.
+  private final StringDictionary strings;
+
+  /** Constructs a manager with a new string dictionary for its calendars. */
+  public CalendarManager() {
+    this(new StringDictionary());
+  }
+
+  /** Constructs a manager whose calendars share the given string dictionary. */
+  public CalendarManager(StringDictionary strings) {
+    this.strings = strings;
+  }
 
   /**
    * Creates a new calendar with the specified name and timezone.
    */
   public void createCalendar(String name, String timezoneStr) {
-    if (calendars.containsKey(name)) {
-      throw new IllegalArgumentException("Calendar name must be unique.");
+    createCalendar(name, timezoneStr, StorageEngine.INDEXED);
+  }
+
+  /**
+   * Creates a new calendar with the specified name and timezone, backed by the given storage
+   * engine.
+   */
+  public void createCalendar(String name, String timezoneStr, StorageEngine engine) {
+    Calendar cal = new Calendar(name, ZoneId.of(timezoneStr), engine.create(strings));
+    synchronized (namesLock) {
+      if (calendars.putIfAbsent(name, cal) != null) {
+        throw new IllegalArgumentException("Calendar name must be unique.");
+      }
+    }
+  }
+
+  /**
+   * Registers an existing calendar under its own name. Its store must use this manager's string
+   * dictionary.
+   */
+  public void addCalendar(Calendar cal) {
+    if (cal.getStringDictionary() != strings) {
+      throw new IllegalArgumentException("Calendar does not share the manager's dictionary.");
+    }
+    synchronized (namesLock) {
+      if (calendars.putIfAbsent(cal.getName(), cal) != null) {
+        throw new IllegalArgumentException("Calendar name must be unique.");
+      }
     }
-    Calendar cal = new Calendar(name, ZoneId.of(timezoneStr));
-    calendars.put(name, cal);
   }
 
   /**
    * Edits an existing calendar's property.
    */
   public void editCalendar(String name, String property, String newValue) {
-    Calendar cal = calendars.get(name);
-    if (cal == null) {
-      throw new IllegalArgumentException("Calendar not found.");
-    }
+    Calendar cal = requireCalendar(name);
     if (property.equalsIgnoreCase("name")) {
-      if (calendars.containsKey(newValue)) {
-        throw new IllegalArgumentException("New calendar name must be unique.");
-      }
-      calendars.remove(name);
-      cal.setName(newValue);
-      calendars.put(newValue, cal);
+      rename(name, newValue);
     } else if (property.equalsIgnoreCase("timezone")) {
       cal.setTimezone(newValue);
+    } else if (property.equalsIgnoreCase("busybitmap")) {
+      cal.setBusyBitmap(Boolean.parseBoolean(newValue));
     } else {
       throw new IllegalArgumentException("Invalid property for calendar.");
     }
   }
 
+  /**
+   * Renames a calendar. The new name is claimed before the old one is released, so no other
+   * calendar can take either name in between.
+   */
+  private void rename(String name, String newValue) {
+    synchronized (namesLock) {
+      Calendar cal = requireCalendar(name);
+      if (name.equals(newValue)) {
+        return;
+      }
+      if (calendars.putIfAbsent(newValue, cal) != null) {
+        throw new IllegalArgumentException("New calendar name must be unique.");
+      }
+      cal.setName(newValue);
+      calendars.remove(name, cal);
+    }
+  }
+
+  private Calendar requireCalendar(String name) {
+    Calendar cal = calendars.get(name);
+    if (cal == null) {
+      throw new IllegalArgumentException("Calendar not found.");
+    }
+    return cal;
+  }
+
   /**
    * Returns the calendar with the specified name.
    */
@@ -51,5 +121,44 @@ public class CalendarManager {
     return calendars.get(name);
   }
 
+  /**
+   * Returns up to limit free slots of the given length common to the named calendars between from
+   * and to, optionally within daily working hours.
+   */
+  public List<TimeSlot> findCommonSlots(List<String> names, LocalDateTime from, LocalDateTime to,
+      long durationMinutes, int limit, LocalTime workStart, LocalTime workEnd) {
+    List<Calendar> chosen = new ArrayList<>();
+    for (String name : names) {
+      chosen.add(requireCalendar(name));
+    }
+    return new SlotFinder(chosen, durationMinutes, workStart, workEnd).find(from, to, limit);
+  }
+
+  /** Writes a binary snapshot of every managed calendar to the file. */
+  public void saveSnapshot(Path file) throws IOException {
+    CalendarSnapshot.write(new ArrayList<>(calendars.values()), file);
+  }
 
+  /**
+   * Replaces every managed calendar with the calendars saved in the snapshot file and returns
+   * them. The file is read completely before anything is replaced.
+   */
+  public List<Calendar> loadSnapshot(Path file) throws IOException {
+    List<Calendar> loaded = CalendarSnapshot.read(file, strings);
+    if (loaded.isEmpty()) {
+      throw new IllegalArgumentException("Snapshot holds no calendars.");
+    }
+    synchronized (namesLock) {
+      calendars.clear();
+      for (Calendar cal : loaded) {
+        calendars.put(cal.getName(), cal);
+      }
+    }
+    return loaded;
+  }
+
+  /** Returns the string dictionary shared by the managed calendars. */
+  public StringDictionary getStringDictionary() {
+    return strings;
+  }
 }
@@ -0,0 +1,329 @@
+package calendar.controller;
+
+import calendar.model.Calendar;
+import calendar.model.event.Event;
+import calendar.model.event.EventPayload;
+import calendar.model.event.RecurringEvent;
+import calendar.model.event.SingleEvent;
+import calendar.model.store.StorageEngine;
+import calendar.model.store.StringDictionary;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of a set of calendars: names, timezones, storage engines and every stored event
+ * with its id. Recurring series are saved as rules, with the indexes of their detached
+ * occurrences, so a long series costs one record.
+ *
+ * <p>Layout, big-endian:
+ * <ul>
+ *   <li>header: magic, version, offset of the string table;</li>
+ *   <li>calendar count, then per calendar: name, timezone, storage engine, busy bitmap flag, next
+ *   id, and tagged event records ended by a zero tag;</li>
+ *   <li>string table: count, then length-prefixed UTF-8 strings.</li>
+ * </ul>
+ * Text fields are indexes into the string table, -1 meaning null, so each distinct string is
+ * written once. Snapshots are written through a direct buffer to a temporary file that then
+ * replaces the target, and read back through a memory-mapped channel.
+ */
+public final class CalendarSnapshot {
+  private static final int MAGIC = 0x43414C53;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 16;
+  private static final int BUFFER_BYTES = 1 << 20;
+  private static final byte END = 0;
+  private static final byte SINGLE = 1;
+  private static final byte SERIES = 2;
+
+  private CalendarSnapshot() {
+  }
+
+  /**
+   * Writes the calendars to the file, replacing it. The state of each calendar's events is copied
+   * under its read lock and encoded after releasing it.
+   */
+  public static void write(Collection<Calendar> calendars, Path file) throws IOException {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      Writer out = new Writer(channel);
+      out.putInt(calendars.size());
+      for (Calendar cal : calendars) {
+        out.writeCalendar(cal);
+      }
+      out.flush();
+      long tableOffset = channel.position();
+      out.writeStrings();
+      out.flush();
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      header.putInt(MAGIC).putInt(VERSION).putLong(tableOffset).flip();
+      while (header.hasRemaining()) {
+        channel.write(header, header.position());
+      }
+      channel.force(false);
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    syncDirectory(file.toAbsolutePath().getParent());
+  }
+
+  /**
+   * Forces a directory's entries to disk, so a rename into it survives a crash. Platforms that
+   * cannot open a directory as a channel, such as Windows, make renames durable themselves.
+   */
+  static void syncDirectory(Path directory) throws IOException {
+    FileChannel channel;
+    try {
+      channel = FileChannel.open(directory, StandardOpenOption.READ);
+    } catch (IOException e) {
+      return;
+    }
+    try (FileChannel dir = channel) {
+      dir.force(true);
+    }
+  }
+
+  /**
+   * Reads the calendars saved in the file. Their text fields are canonicalized through the given
+   * dictionary, which the calendars also use afterwards.
+   */
+  public static List<Calendar> read(Path file, StringDictionary dictionary) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long length = channel.size();
+      if (length > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot too large to map: " + file);
+      }
+      MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+      if (length < HEADER_BYTES || in.getInt() != MAGIC) {
+        throw new IOException("Not a calendar snapshot: " + file);
+      }
+      int version = in.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported snapshot version: " + version);
+      }
+      long tableOffset = in.getLong();
+      if (tableOffset < HEADER_BYTES || tableOffset > length) {
+        throw new IOException("Corrupt snapshot: " + file);
+      }
+      String[] strings = readStrings(in.duplicate().position((int) tableOffset), dictionary);
+      int count = in.getInt();
+      List<Calendar> calendars = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        calendars.add(readCalendar(in, strings, dictionary));
+      }
+      return calendars;
+    } catch (RuntimeException e) {
+      throw new IOException("Corrupt snapshot: " + file, e);
+    }
+  }
+
+  private static String[] readStrings(ByteBuffer in, StringDictionary dictionary) {
+    String[] strings = new String[in.getInt()];
+    byte[] bytes = new byte[64];
+    for (int i = 0; i < strings.length; i++) {
+      int length = in.getInt();
+      if (bytes.length < length) {
+        bytes = new byte[Math.max(length, bytes.length * 2)];
+      }
+      in.get(bytes, 0, length);
+      strings[i] = dictionary.intern(new String(bytes, 0, length, StandardCharsets.UTF_8));
+    }
+    return strings;
+  }
+
+  private static Calendar readCalendar(
+      ByteBuffer in, String[] strings, StringDictionary dictionary) {
+    String name = text(in, strings);
+    ZoneId timezone = ZoneId.of(text(in, strings));
+    StorageEngine engine = StorageEngine.values()[in.get()];
+    boolean busyBitmap = in.get() != 0;
+    long nextId = in.getLong();
+    List<Event> singles = new ArrayList<>();
+    List<RecurringEvent> series = new ArrayList<>();
+    for (byte tag = in.get(); tag != END; tag = in.get()) {
+      long id = in.getLong();
+      long start = in.getLong();
+      long end = in.getLong();
+      EventPayload payload = new EventPayload(
+          text(in, strings), text(in, strings), text(in, strings), in.get() != 0);
+      if (tag == SINGLE) {
+        singles.add(SingleEvent.restore(payload, start, end, id));
+      } else if (tag == SERIES) {
+        int weekdays = in.get();
+        int occurrences = in.getInt();
+        int[] exceptions = new int[in.getInt()];
+        for (int i = 0; i < exceptions.length; i++) {
+          exceptions[i] = in.getInt();
+        }
+        series.add(RecurringEvent.restore(
+            payload, start, end, weekdays, occurrences, id, exceptions));
+      } else {
+        throw new IllegalStateException("Unknown record tag: " + tag);
+      }
+    }
+    Calendar cal = new Calendar(name, timezone, engine.create(dictionary));
+    cal.restore(singles, series, nextId);
+    cal.setBusyBitmap(busyBitmap);
+    return cal;
+  }
+
+  private static String text(ByteBuffer in, String[] strings) {
+    int id = in.getInt();
+    return id < 0 ? null : strings[id];
+  }
+
+  /** The saved state of one stored event or series, copied while its calendar is locked. */
+  private static final class Record {
+    private final byte tag;
+    private final long id;
+    private final long startMinute;
+    private final long endMinute;
+    private final String name;
+    private final String description;
+    private final String location;
+    private final boolean isPublic;
+    private final int weekdayBits;
+    private final int occurrences;
+    private final int[] exceptions;
+
+    private Record(byte tag, Event event) {
+      this(tag, event, 0, 0, null);
+    }
+
+    private Record(RecurringEvent rule) {
+      this(SERIES, rule, rule.getWeekdayBits(), rule.getOccurrenceCount(), rule.getExceptions());
+    }
+
+    private Record(byte tag, Event event, int weekdayBits, int occurrences, int[] exceptions) {
+      this.tag = tag;
+      this.id = event.getId();
+      this.startMinute = event.getStartMinute();
+      this.endMinute = event.getEndMinute();
+      this.name = event.getName();
+      this.description = event.getDescription();
+      this.location = event.getLocation();
+      this.isPublic = event.isPublic();
+      this.weekdayBits = weekdayBits;
+      this.occurrences = occurrences;
+      this.exceptions = exceptions;
+    }
+  }
+
+  /** Buffered writer that also builds the string table. */
+  private static final class Writer {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    private Writer(FileChannel channel) throws IOException {
+      this.channel = channel;
+      channel.position(HEADER_BYTES);
+    }
+
+    private void writeCalendar(Calendar cal) throws IOException {
+      List<Record> records = new ArrayList<>();
+      // Copy the event state under the read lock, since writers change series and events in place.
+      long nextId = cal.forEachStored(
+          event -> records.add(new Record(SINGLE, event)),
+          rule -> records.add(new Record(rule)));
+      putText(cal.getName());
+      putText(cal.getTimezone().getId());
+      ensure(10);
+      buffer.put((byte) cal.getStorageEngine().ordinal());
+      buffer.put((byte) (cal.hasBusyBitmap() ? 1 : 0));
+      buffer.putLong(nextId);
+      for (Record record : records) {
+        putRecord(record);
+      }
+      ensure(1);
+      buffer.put(END);
+    }
+
+    private void putRecord(Record record) throws IOException {
+      int name = idOf(record.name);
+      int description = idOf(record.description);
+      int location = idOf(record.location);
+      ensure(38);
+      buffer.put(record.tag);
+      buffer.putLong(record.id);
+      buffer.putLong(record.startMinute);
+      buffer.putLong(record.endMinute);
+      buffer.putInt(name);
+      buffer.putInt(description);
+      buffer.putInt(location);
+      buffer.put((byte) (record.isPublic ? 1 : 0));
+      if (record.tag == SERIES) {
+        ensure(1);
+        buffer.put((byte) record.weekdayBits);
+        putInt(record.occurrences);
+        putInt(record.exceptions.length);
+        for (int n : record.exceptions) {
+          putInt(n);
+        }
+      }
+    }
+
+    private void putText(String value) throws IOException {
+      putInt(idOf(value));
+    }
+
+    private void putInt(int value) throws IOException {
+      ensure(4);
+      buffer.putInt(value);
+    }
+
+    private int idOf(String value) {
+      if (value == null) {
+        return -1;
+      }
+      Integer id = ids.get(value);
+      if (id == null) {
+        id = strings.size();
+        ids.put(value, id);
+        strings.add(value);
+      }
+      return id;
+    }
+
+    private void writeStrings() throws IOException {
+      putInt(strings.size());
+      for (String value : strings) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        for (int offset = 0; offset < bytes.length; ) {
+          ensure(1);
+          int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+          buffer.put(bytes, offset, chunk);
+          offset += chunk;
+        }
+      }
+    }
+
+    private void ensure(int bytes) throws IOException {
+      if (buffer.remaining() < bytes) {
+        flush();
+      }
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+  }
+}
@@ -0,0 +1,376 @@
+package calendar.controller;
+
+import calendar.controller.command.CommandFactory;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of the mutating commands run through a controller, kept next to the latest
+ * compacted state in one directory.
+ *
+ * <p>The journal starts with a header naming its generation; the state it applies on top of is
+ * the snapshot of that generation. Each record holds its length, a CRC32 checksum, a type and a
+ * UTF-8 payload: a command line, or the name of the active calendar at the time of compaction. A
+ * command is appended only after it succeeds, so replaying the journal never fails halfway; a
+ * torn record at the end, left by a crash, is cut off on recovery, while a damaged record followed
+ * by others fails recovery rather than dropping them.
+ *
+ * <p>Commands run and append one at a time, so the journal order is the order they changed the
+ * state in. Making records durable is separate: a caller waiting for its record either forces
+ * the file itself or waits for a force already under way, and one force covers every record
+ * appended before it started. Concurrent callers therefore share fsyncs, and a single caller can
+ * append a batch and wait once.
+ *
+ * <p>After a set number of records the journal compacts: it saves a snapshot of the next
+ * generation, then atomically replaces the journal by an empty one of that generation. A crash in
+ * between leaves the old journal and its snapshot in place, so recovery stays correct, and its
+ * cost stays bounded by the compaction interval.
+ */
+public class CommandJournal implements Closeable {
+  /** Records between compactions unless configured otherwise. */
+  public static final int DEFAULT_COMPACT_EVERY = 10_000;
+
+  private static final String JOURNAL_FILE = "commands.journal";
+  private static final int MAGIC = 0x434A524E;
+  private static final int HEADER_BYTES = 12;
+  private static final int RECORD_HEADER_BYTES = 8;
+  private static final byte COMMAND = 1;
+  private static final byte ACTIVE = 2;
+
+  private final Path directory;
+  private final CalendarController controller;
+  private final int compactEvery;
+  // Orders command execution, appends and compaction.
+  private final Object appendLock = new Object();
+  private final ReentrantLock syncLock = new ReentrantLock();
+  private final Condition synced = syncLock.newCondition();
+  private volatile FileChannel channel;
+  private long generation;
+  private volatile long appended;
+  private long durable;
+  private boolean syncing;
+  private int sinceCompaction;
+  private int replayed;
+  private volatile boolean deferSync;
+
+  private CommandJournal(Path directory, CalendarController controller, int compactEvery) {
+    this.directory = directory;
+    this.controller = controller;
+    this.compactEvery = compactEvery;
+  }
+
+  /**
+   * Opens the journal in the directory, restores the controller from the latest compacted state
+   * and the journal, and attaches the journal so later mutating commands are recorded.
+   */
+  public static CommandJournal open(Path directory, CalendarController controller)
+      throws IOException {
+    return open(directory, controller, DEFAULT_COMPACT_EVERY);
+  }
+
+  /** Opens the journal, compacting after the given number of records. */
+  public static CommandJournal open(
+      Path directory, CalendarController controller, int compactEvery) throws IOException {
+    if (compactEvery <= 0) {
+      throw new IllegalArgumentException("Compaction interval must be positive.");
+    }
+    Files.createDirectories(directory);
+    CommandJournal journal = new CommandJournal(directory, controller, compactEvery);
+    journal.recover();
+    controller.setJournal(journal);
+    return journal;
+  }
+
+  /** Returns the number of records replayed when the journal was opened. */
+  public int getReplayed() {
+    return replayed;
+  }
+
+  /** Returns the generation of the current journal, raised by every compaction. */
+  public long getGeneration() {
+    synchronized (appendLock) {
+      return generation;
+    }
+  }
+
+  /**
+   * Sets whether recording a command returns before its record is durable. Callers that defer
+   * must call {@link #syncAll} before acknowledging the commands they recorded.
+   */
+  public void setDeferSync(boolean deferSync) {
+    this.deferSync = deferSync;
+  }
+
+  /**
+   * Runs a mutating command and appends it to the journal if it succeeds, then waits until the
+   * record is durable unless syncs are deferred. Returns the command's result.
+   */
+  public <T> T record(String command, Callable<T> action) throws Exception {
+    T result;
+    long seq;
+    synchronized (appendLock) {
+      result = action.call();
+      seq = append(COMMAND, command.trim());
+      if (++sinceCompaction >= compactEvery) {
+        compact();
+        return result;
+      }
+    }
+    // Wait outside the append lock, so other commands can append and share the next force.
+    if (!deferSync) {
+      awaitDurable(seq);
+    }
+    return result;
+  }
+
+  /**
+   * Runs a command that replaces the state wholesale, such as loading a snapshot, and compacts
+   * right after it, so recovery never depends on the file it read.
+   */
+  public <T> T replaceState(Callable<T> action) throws Exception {
+    synchronized (appendLock) {
+      T result = action.call();
+      compact();
+      return result;
+    }
+  }
+
+  /** Waits until every record appended so far is durable. */
+  public void syncAll() throws IOException {
+    awaitDurable(appended);
+  }
+
+  /**
+   * Saves the current state as a snapshot of the next generation and replaces the journal by an
+   * empty one of that generation.
+   */
+  public void compact() throws IOException {
+    synchronized (appendLock) {
+      syncAll();
+      long next = generation + 1;
+      controller.saveSnapshot(stateFile(next).toString());
+      Path temp = directory.resolve(JOURNAL_FILE + ".tmp");
+      FileChannel fresh = FileChannel.open(temp, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      try {
+        writeHeader(fresh, next);
+        writeRecord(fresh, ACTIVE, controller.getActiveCalendarName());
+        fresh.force(true);
+        Files.move(temp, journalFile(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        // The rename must be durable before the old state it replaces is deleted.
+        CalendarSnapshot.syncDirectory(directory);
+      } catch (IOException e) {
+        fresh.close();
+        throw e;
+      }
+      syncLock.lock();
+      try {
+        channel.close();
+        channel = fresh;
+        channel.position(channel.size());
+      } finally {
+        syncLock.unlock();
+      }
+      Files.deleteIfExists(stateFile(generation));
+      generation = next;
+      sinceCompaction = 0;
+    }
+  }
+
+  /** Makes every appended record durable and closes the journal. */
+  @Override
+  public void close() throws IOException {
+    synchronized (appendLock) {
+      syncAll();
+      channel.close();
+    }
+  }
+
+  private long append(byte type, String payload) throws IOException {
+    writeRecord(channel, type, payload);
+    return ++appended;
+  }
+
+  /**
+   * Group commit: the first caller to find its record not yet durable forces the file on behalf
+   * of everyone, and callers arriving meanwhile wait for that force or the next one.
+   */
+  private void awaitDurable(long seq) throws IOException {
+    syncLock.lock();
+    try {
+      while (durable < seq) {
+        if (syncing) {
+          synced.await();
+          continue;
+        }
+        syncing = true;
+        long target = appended;
+        FileChannel forced = channel;
+        syncLock.unlock();
+        boolean done = false;
+        try {
+          forced.force(false);
+          done = true;
+        } finally {
+          syncLock.lock();
+          syncing = false;
+          if (done) {
+            durable = Math.max(durable, target);
+          }
+          synced.signalAll();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the journal.");
+    } finally {
+      syncLock.unlock();
+    }
+  }
+
+  /** Loads the state the journal applies to, replays its records and opens it for appending. */
+  private void recover() throws IOException {
+    Path file = journalFile();
+    if (!Files.exists(file)) {
+      FileChannel fresh = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+          StandardOpenOption.WRITE);
+      writeHeader(fresh, 0);
+      fresh.force(true);
+      CalendarSnapshot.syncDirectory(directory);
+      channel = fresh;
+      return;
+    }
+    FileChannel existing = FileChannel.open(file, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try {
+      long length = existing.size();
+      if (length > Integer.MAX_VALUE) {
+        throw new IOException("Journal too large to map: " + file);
+      }
+      MappedByteBuffer in = existing.map(FileChannel.MapMode.READ_ONLY, 0, length);
+      if (length < HEADER_BYTES || in.getInt() != MAGIC) {
+        throw new IOException("Not a command journal: " + file);
+      }
+      generation = in.getLong();
+      if (Files.exists(stateFile(generation))) {
+        controller.loadSnapshot(stateFile(generation).toString());
+      } else if (generation > 0) {
+        throw new IOException("Missing state for journal generation " + generation);
+      }
+      long valid = replay(in);
+      if (valid < length) {
+        // A torn record from a crash; nothing after it was acknowledged.
+        existing.truncate(valid);
+        existing.force(true);
+      }
+      existing.position(valid);
+      channel = existing;
+    } catch (IOException | RuntimeException e) {
+      existing.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Replays the records in the buffer and returns the end of the last intact one. A bad record
+   * is a torn tail only if it runs to the end of the file, or nothing but zeros follows it;
+   * anywhere else it means records after it would be lost, so the journal is reported corrupt.
+   */
+  private long replay(ByteBuffer in) throws IOException {
+    CRC32 crc = new CRC32();
+    while (in.hasRemaining()) {
+      int start = in.position();
+      if (in.remaining() < RECORD_HEADER_BYTES) {
+        return start;
+      }
+      int length = in.getInt();
+      int checksum = in.getInt();
+      if (length > in.remaining() || (length < 1 && zerosFrom(in, start))) {
+        return start;
+      }
+      if (length < 1) {
+        throw new IOException("Corrupt journal record at offset " + start);
+      }
+      byte[] body = new byte[length];
+      in.get(body);
+      crc.reset();
+      crc.update(body);
+      if ((int) crc.getValue() != checksum) {
+        if (in.hasRemaining() && !zerosFrom(in, start + RECORD_HEADER_BYTES + length)) {
+          throw new IOException("Corrupt journal record at offset " + start);
+        }
+        return start;
+      }
+      String payload = new String(body, 1, length - 1, StandardCharsets.UTF_8);
+      try {
+        if (body[0] == ACTIVE) {
+          controller.useCalendar(payload);
+        } else {
+          CommandFactory.process(payload, controller).execute();
+        }
+      } catch (Exception e) {
+        throw new IOException("Replay failed at journal offset " + start + ": " + e.getMessage(),
+            e);
+      }
+      replayed++;
+    }
+    return in.position();
+  }
+
+  /** Returns true if every byte of the buffer from the offset to its limit is zero. */
+  private static boolean zerosFrom(ByteBuffer in, int offset) {
+    for (int i = offset; i < in.limit(); i++) {
+      if (in.get(i) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Path journalFile() {
+    return directory.resolve(JOURNAL_FILE);
+  }
+
+  private Path stateFile(long generation) {
+    return directory.resolve("state-" + generation + ".snap");
+  }
+
+  private static void writeHeader(FileChannel target, long generation) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    header.putInt(MAGIC).putLong(generation).flip();
+    writeFully(target, header);
+  }
+
+  private static void writeRecord(FileChannel target, byte type, String payload)
+      throws IOException {
+    byte[] text = payload.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + 1 + text.length);
+    record.position(RECORD_HEADER_BYTES);
+    record.put(type).put(text);
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), RECORD_HEADER_BYTES, 1 + text.length);
+    record.putInt(0, 1 + text.length).putInt(4, (int) crc.getValue());
+    record.flip();
+    writeFully(target, record);
+  }
+
+  private static void writeFully(FileChannel target, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      target.write(buffer);
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package calendar.controller;
+
+import calendar.model.Calendar;
+import calendar.model.TimeSlot;
+import calendar.model.event.EpochMinutes;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Finds free slots common to several calendars.
+ *
+ * <p>The horizon is read in windows. For each window, every calendar contributes its coalesced busy
+ * intervals, already ordered by start, and a priority queue merges the k lists into one stream
+ * ordered by start. The gaps in that stream are free in every calendar. Windows are read only until
+ * enough slots are found, so a long horizon costs nothing past the last slot returned.
+ *
+ * <p>Calendars treat events that touch as conflicting, so a slot never touches a busy interval and
+ * can be booked as is.
+ */
+public class SlotFinder {
+  private static final long MINUTES_PER_DAY = 24L * 60L;
+  private static final long WINDOW_MINUTES = 28L * MINUTES_PER_DAY;
+
+  private final List<Calendar> calendars;
+  private final long duration;
+  private final boolean workingHours;
+  private final long workStart;
+  private final long workEnd;
+
+  /** Constructs a finder for slots of the given length in minutes at any time of day. */
+  public SlotFinder(List<Calendar> calendars, long durationMinutes) {
+    this(calendars, durationMinutes, null, null);
+  }
+
+  /**
+   * Constructs a finder for slots of the given length in minutes that lie within working hours on
+   * each day. Null working hours allow slots at any time.
+   */
+  public SlotFinder(
+      List<Calendar> calendars, long durationMinutes, LocalTime workStart, LocalTime workEnd) {
+    if (durationMinutes <= 0) {
+      throw new IllegalArgumentException("Slot duration must be positive.");
+    }
+    if (workStart != null && workEnd != null && !workStart.isBefore(workEnd)) {
+      throw new IllegalArgumentException("Working hours must start before they end.");
+    }
+    this.calendars = new ArrayList<>(calendars);
+    this.duration = durationMinutes;
+    this.workingHours = workStart != null && workEnd != null;
+    this.workStart = workingHours ? workStart.getHour() * 60L + workStart.getMinute() : 0;
+    this.workEnd = workingHours ? workEnd.getHour() * 60L + workEnd.getMinute() : 0;
+  }
+
+  /**
+   * Returns up to limit slots between from and to, earliest first. Each free window yields as
+   * many slots as fit in it, one after another; they are alternatives to book one of.
+   */
+  public List<TimeSlot> find(LocalDateTime from, LocalDateTime to, int limit) {
+    List<TimeSlot> slots = new ArrayList<>();
+    long end = EpochMinutes.of(to);
+    // Earliest minute not covered by a busy interval seen so far.
+    long freeFrom = EpochMinutes.of(from);
+    for (long window = freeFrom; window <= end && slots.size() < limit; ) {
+      long windowEnd = Math.min(end, window + WINDOW_MINUTES - 1);
+      PriorityQueue<Cursor> queue = new PriorityQueue<>();
+      for (Calendar cal : calendars) {
+        List<TimeSlot> busy = cal.freeBusy(
+            EpochMinutes.toDateTime(window), EpochMinutes.toDateTime(windowEnd)).getBusy();
+        if (!busy.isEmpty()) {
+          queue.add(new Cursor(busy));
+        }
+      }
+      while (!queue.isEmpty() && slots.size() < limit) {
+        Cursor cursor = queue.poll();
+        if (cursor.start > freeFrom) {
+          addSlots(freeFrom, cursor.start - 1, slots, limit);
+        }
+        freeFrom = Math.max(freeFrom, cursor.end + 1);
+        if (cursor.advance()) {
+          queue.add(cursor);
+        }
+      }
+      window = windowEnd + 1;
+    }
+    if (slots.size() < limit && freeFrom <= end) {
+      addSlots(freeFrom, end, slots, limit);
+    }
+    return slots;
+  }
+
+  /**
+   * Adds slots in the free minutes [from, to], within working hours if set, stepping through each
+   * free window by the slot duration until it or the limit runs out.
+   */
+  private void addSlots(long from, long to, List<TimeSlot> slots, int limit) {
+    if (!workingHours) {
+      addRun(from, to, slots, limit);
+      return;
+    }
+    for (long day = Math.floorDiv(from, MINUTES_PER_DAY) * MINUTES_PER_DAY;
+        day <= to && slots.size() < limit; day += MINUTES_PER_DAY) {
+      addRun(Math.max(from, day + workStart), Math.min(to, day + workEnd), slots, limit);
+    }
+  }
+
+  /** Adds back-to-back slots starting at first that end by last. */
+  private void addRun(long first, long last, List<TimeSlot> slots, int limit) {
+    for (long start = first; last - start >= duration && slots.size() < limit;
+        start += duration) {
+      slots.add(slot(start));
+    }
+  }
+
+  private TimeSlot slot(long start) {
+    return new TimeSlot(EpochMinutes.toDateTime(start), EpochMinutes.toDateTime(start + duration));
+  }
+
+  /** Position in one calendar's busy intervals, ordered by the start of the current interval. */
+  private static final class Cursor implements Comparable<Cursor> {
+    private final List<TimeSlot> busy;
+    private int position;
+    private long start;
+    private long end;
+
+    private Cursor(List<TimeSlot> busy) {
+      this.busy = busy;
+      load();
+    }
+
+    private boolean advance() {
+      if (++position == busy.size()) {
+        return false;
+      }
+      load();
+      return true;
+    }
+
+    private void load() {
+      TimeSlot slot = busy.get(position);
+      start = EpochMinutes.of(slot.getStart());
+      end = EpochMinutes.of(slot.getEnd());
+    }
+
+    @Override
+    public int compareTo(Cursor other) {
+      return Long.compare(start, other.start);
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package calendar.controller.command;
 
 import calendar.controller.CalendarController;
+import calendar.controller.CommandJournal;
 import calendar.view.exceptions.InvalidCommandException;
 import calendar.view.exceptions.InvalidTokenException;
 import calendar.view.exceptions.MissingParameterException;
@@ -20,23 +21,34 @@ public class CommandFactory {
 
     switch (commandType) {
       case "create":
-        return new CreateCommand(tokens, controller);
+        return journaled(new CreateCommand(tokens, controller), input, controller, false);
       case "edit":
-        return new EditCommand(tokens, controller);
+        return journaled(new EditCommand(tokens, controller), input, controller, false);
       case "use":
-        return new UseCommand(tokens, controller);
+        return journaled(new UseCommand(tokens, controller), input, controller, false);
       case "copy":
-        return new CopyCommand(tokens, controller);
+        return journaled(new CopyCommand(tokens, controller), input, controller, false);
       case "print":
         return new PrintCommand(tokens, controller);
       case "export":
         return new ExportCommand(tokens, controller);
       case "show":
         return new ShowCommand(tokens, controller);
+      case "save":
+        return new SnapshotCommand(tokens, controller);
+      case "load":
+        return journaled(new SnapshotCommand(tokens, controller), input, controller, true);
       default: {
         throw new InvalidCommandException(commandType);
       }
     }
   }
 
+  /** Wraps a mutating command so it is recorded if the controller has a command journal. */
+  private static Command journaled(
+      Command command, String input, CalendarController controller, boolean replacesState) {
+    CommandJournal journal = controller.getJournal();
+    return journal == null ? command : new JournaledCommand(command, input, journal, replacesState);
+  }
+
 }
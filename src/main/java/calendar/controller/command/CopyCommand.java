@@ -38,8 +38,8 @@ public class CopyCommand implements Command {
       }
       index++;
       String targetDateTime = tokens[index++];
-      controller.copyEvent(eventName, sourceDateTime, targetCal, targetDateTime);
-      return "Event " + eventName + " copied to calendar " + targetCal + ".";
+      String id = controller.copyEvent(eventName, sourceDateTime, targetCal, targetDateTime);
+      return "Event " + eventName + " copied to calendar " + targetCal + " (" + id + ").";
     } else if (tokens[index].equalsIgnoreCase("events")) {
       index++;
       if (tokens[index].equalsIgnoreCase("on")) {
@@ -55,8 +55,8 @@ public class CopyCommand implements Command {
         }
         index++;
         String targetDateTime = tokens[index++];
-        controller.copyEventsOn(date, targetCal, targetDateTime);
-        return "Events on " + date + " copied to calendar " + targetCal + ".";
+        String ids = controller.copyEventsOn(date, targetCal, targetDateTime);
+        return "Events on " + date + " copied to calendar " + targetCal + " (" + ids + ").";
       } else if (tokens[index].equalsIgnoreCase("between")) {
         index++;
         String startDate = tokens[index++];
@@ -75,8 +75,8 @@ public class CopyCommand implements Command {
         }
         index++;
         String targetDate = tokens[index++];
-        controller.copyEventsBetween(startDate, endDate, targetCal, targetDate);
-        return "Events between " + startDate + " and " + endDate + " copied to calendar " + targetCal + ".";
+        String ids = controller.copyEventsBetween(startDate, endDate, targetCal, targetDate);
+        return "Events between " + startDate + " and " + endDate + " copied to calendar " + targetCal + " (" + ids + ").";
       } else {
         throw new InvalidCommandException("copy");
       }
@@ -37,6 +37,16 @@ public class CreateCommand implements Command {
     }
     index++;
     String timezone = tokens[index++];
+    if (index < tokens.length && tokens[index].equalsIgnoreCase("--storage")) {
+      index++;
+      if (index >= tokens.length) {
+        throw new MissingParameterException("storage engine");
+      }
+      String storage = tokens[index++];
+      controller.createCalendar(calName, timezone, storage);
+      return "Calendar created: " + calName + " with timezone " + timezone
+          + " using " + storage.toLowerCase() + " storage";
+    }
     controller.createCalendar(calName, timezone);
     return "Calendar created: " + calName + " with timezone " + timezone;
   }
@@ -93,23 +103,23 @@ public class CreateCommand implements Command {
             throw new InvalidTokenException("times");
           }
           index++;
-          controller.createRecurringEventOccurrences(
+          String ids = controller.createRecurringEventOccurrences(
                   eventName, startDateTime, endDateTime, "", "", true, weekdays, occurrences, autoDecline);
-          return "Recurring timed event created with " + occurrences + " occurrences.";
+          return "Recurring timed event created with " + occurrences + " occurrences. Assigned " + ids + ".";
         } else if (recurringType.equals("until")) {
           if (index >= tokens.length) {
             throw new MissingParameterException("until datetime");
           }
           String untilDateTime = tokens[index++];
-          controller.createRecurringEventUntil(
+          String ids = controller.createRecurringEventUntil(
                   eventName, startDateTime, endDateTime, "", "", true, weekdays, untilDateTime, autoDecline);
-          return "Recurring timed event created until " + untilDateTime + ".";
+          return "Recurring timed event created until " + untilDateTime + ". Assigned " + ids + ".";
         } else {
           throw new InvalidCommandException("Recurring specification: " + recurringType);
         }
       } else {
-        controller.createSingleEvent(eventName, startDateTime, endDateTime, "", "", true, autoDecline);
-        return "Single timed event created: " + eventName;
+        String id = controller.createSingleEvent(eventName, startDateTime, endDateTime, "", "", true, autoDecline);
+        return "Single timed event created: " + eventName + " (" + id + ")";
       }
     } else if (mode.equals("on")) {
       index++;
@@ -136,23 +146,23 @@ public class CreateCommand implements Command {
             throw new InvalidTokenException("times");
           }
           index++;
-          controller.createRecurringAllDayEventOccurrences(
+          String ids = controller.createRecurringAllDayEventOccurrences(
                   eventName, date, "", "", true, weekdays, occurrences, autoDecline);
-          return "Recurring all day event created with " + occurrences + " occurrences.";
+          return "Recurring all day event created with " + occurrences + " occurrences. Assigned " + ids + ".";
         } else if (recurringType.equals("until")) {
           if (index >= tokens.length) {
             throw new MissingParameterException("until date");
           }
           String untilDate = tokens[index++];
-          controller.createRecurringAllDayEventUntil(
+          String ids = controller.createRecurringAllDayEventUntil(
                   eventName, date, "", "", true, weekdays, untilDate, autoDecline);
-          return "Recurring all day event created until " + untilDate + ".";
+          return "Recurring all day event created until " + untilDate + ". Assigned " + ids + ".";
         } else {
           throw new InvalidCommandException("Recurring specification: " + recurringType);
         }
       } else {
-        controller.createSingleAllDayEvent(eventName, date, "", "", true, autoDecline);
-        return "Single all day event created: " + eventName;
+        String id = controller.createSingleAllDayEvent(eventName, date, "", "", true, autoDecline);
+        return "Single all day event created: " + eventName + " (" + id + ")";
       }
     } else {
       throw new InvalidCommandException("Expected from or on, found: " + mode);
@@ -39,7 +39,11 @@ public class EditCommand implements Command {
     String property = tokens[index++];
     String newValue = tokens[index++];
     controller.editCalendar(calName, property, newValue);
-    return "Calendar " + calName + " updated: " + property + " = " + newValue;
+    String result = "Calendar " + calName + " updated: " + property + " = " + newValue;
+    if (property.equalsIgnoreCase("busybitmap")) {
+      result += " (" + controller.getBusyBitmapReport(calName) + ")";
+    }
+    return result;
   }
 
   /** Processes an edit command with the provided tokens. */
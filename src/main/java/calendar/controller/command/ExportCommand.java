@@ -17,11 +17,26 @@ public class ExportCommand implements Command {
   /** Executes the export calendar command. */
   @Override
   public String execute() throws Exception {
-    if (tokens.length < 3 || !tokens[1].equalsIgnoreCase("cal")) {
-      throw new InvalidCommandException("export command must be 'export cal <filename>'");
+    boolean sinceLast = tokens.length == 4 && tokens[3].equalsIgnoreCase("--since-last");
+    boolean window = tokens.length == 7 && tokens[3].equalsIgnoreCase("from")
+        && tokens[5].equalsIgnoreCase("to");
+    if (tokens.length < 3 || !tokens[1].equalsIgnoreCase("cal")
+        || (tokens.length > 3 && !sinceLast && !window)) {
+      throw new InvalidCommandException("export command must be 'export cal <filename>"
+          + " [--since-last | from <date> to <date>]'");
     }
     String fileName = tokens[2];
+    if (window) {
+      String path = controller.exportCalendarBetween(fileName, tokens[4], tokens[6]);
+      return "Calendar exported to CSV at: " + path + " (" + controller.getLastExportReport()
+          + ")";
+    }
+    if (sinceLast) {
+      String path = controller.exportCalendarChanges(fileName);
+      return "Calendar changes exported to CSV at: " + path + " ("
+          + controller.getLastExportReport() + ")";
+    }
     String path = controller.exportCalendar(fileName);
-    return "Calendar exported to CSV at: " + path;
+    return "Calendar exported to CSV at: " + path + " (" + controller.getLastExportReport() + ")";
   }
 }
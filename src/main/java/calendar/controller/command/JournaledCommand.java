@@ -0,0 +1,35 @@
+package calendar.controller.command;
+
+import calendar.controller.CommandJournal;
+
+/**
+ * Runs a mutating command through the command journal, so the command is recorded before its
+ * output is returned.
+ */
+public class JournaledCommand implements Command {
+  private final Command command;
+  private final String input;
+  private final CommandJournal journal;
+  private final boolean replacesState;
+
+  /**
+   * Constructor for a journaled command. Commands that replace the whole state compact the
+   * journal instead of being appended to it.
+   */
+  public JournaledCommand(
+      Command command, String input, CommandJournal journal, boolean replacesState) {
+    this.command = command;
+    this.input = input;
+    this.journal = journal;
+    this.replacesState = replacesState;
+  }
+
+  /** Executes the wrapped command and records it. */
+  @Override
+  public String execute() throws Exception {
+    if (replacesState) {
+      return journal.replaceState(command::execute);
+    }
+    return journal.record(input, command::execute);
+  }
+}
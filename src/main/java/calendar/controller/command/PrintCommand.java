@@ -6,7 +6,7 @@ import calendar.view.exceptions.InvalidTokenException;
 import calendar.view.exceptions.MissingParameterException;
 
 /** Concrete implementation of the print command. */
-public class PrintCommand implements Command {
+public class PrintCommand implements StreamingCommand {
   private String[] tokens;
   private CalendarController controller;
 
@@ -19,6 +19,14 @@ public class PrintCommand implements Command {
   /** Executes the print command. */
   @Override
   public String execute() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    execute(sb);
+    return sb.toString();
+  }
+
+  /** Executes the print command, writing events to out as they are read. */
+  @Override
+  public void execute(Appendable out) throws Exception {
     if (tokens.length < 3) {
       throw new MissingParameterException("print command");
     }
@@ -30,14 +38,14 @@ public class PrintCommand implements Command {
         throw new MissingParameterException("date for print events on");
       }
       String date = tokens[3];
-      return controller.getFormattedEventsOn(date);
+      controller.printEventsOn(date, out);
     } else if (tokens[2].equalsIgnoreCase("from")) {
       if (tokens.length < 6 || !tokens[4].equalsIgnoreCase("to")) {
         throw new InvalidTokenException("to");
       }
       String startDateTime = tokens[3];
       String endDateTime = tokens[5];
-      return controller.getFormattedEventsBetween(startDateTime, endDateTime);
+      controller.printEventsBetween(startDateTime, endDateTime, out);
     } else {
       throw new InvalidCommandException("Invalid print events command.");
     }
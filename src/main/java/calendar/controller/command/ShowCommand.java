@@ -2,6 +2,8 @@ package calendar.controller.command;
 
 import calendar.controller.CalendarController;
 import calendar.view.exceptions.InvalidCommandException;
+import java.util.Arrays;
+import java.util.List;
 
 /** Concrete implementation of the show command. */
 public class ShowCommand implements Command {
@@ -17,10 +19,58 @@ public class ShowCommand implements Command {
   /** Executes the show command. */
   @Override
   public String execute() throws Exception {
+    if (tokens.length > 1 && tokens[1].equalsIgnoreCase("freebusy")) {
+      if (tokens.length < 6 || !tokens[2].equalsIgnoreCase("from") || !tokens[4].equalsIgnoreCase("to")) {
+        throw new InvalidCommandException("show freebusy command must be 'show freebusy from <datetime> to <datetime>'");
+      }
+      return controller.getFreeBusy(tokens[3], tokens[5]);
+    }
+    if (tokens.length > 1 && tokens[1].equalsIgnoreCase("slots")) {
+      return showSlots();
+    }
+    if (tokens.length > 1 && tokens[1].equalsIgnoreCase("event")) {
+      if (tokens.length < 3) {
+        throw new InvalidCommandException("show event command must be 'show event <id>'");
+      }
+      return controller.getFormattedEventById(Long.parseLong(tokens[2]));
+    }
     if (tokens.length < 4 || !tokens[1].equalsIgnoreCase("status") || !tokens[2].equalsIgnoreCase("on")) {
       throw new InvalidCommandException("show status command must be 'show status on <datetime>'");
     }
     String dateTime = tokens[3];
     return controller.getBusyStatus(dateTime);
   }
+
+  /**
+   * Parses 'show slots <minutes> for <cal1,cal2,...> from <datetime> to <datetime>
+   * [between <HH:mm> and <HH:mm>] [limit <n>]'.
+   */
+  private String showSlots() throws Exception {
+    String usage = "show slots command must be 'show slots <minutes> for <calendars> from <datetime> "
+        + "to <datetime> [between <HH:mm> and <HH:mm>] [limit <n>]'";
+    if (tokens.length < 9 || !tokens[3].equalsIgnoreCase("for")
+        || !tokens[5].equalsIgnoreCase("from") || !tokens[7].equalsIgnoreCase("to")) {
+      throw new InvalidCommandException(usage);
+    }
+    String workStart = null;
+    String workEnd = null;
+    int limit = 5;
+    int i = 9;
+    while (i < tokens.length) {
+      if (tokens[i].equalsIgnoreCase("between") && i + 3 < tokens.length
+          && tokens[i + 2].equalsIgnoreCase("and")) {
+        workStart = tokens[i + 1];
+        workEnd = tokens[i + 3];
+        i += 4;
+      } else if (tokens[i].equalsIgnoreCase("limit") && i + 1 < tokens.length) {
+        limit = Integer.parseInt(tokens[i + 1]);
+        i += 2;
+      } else {
+        throw new InvalidCommandException(usage);
+      }
+    }
+    List<String> calendars = Arrays.asList(tokens[4].split(","));
+    return controller.findCommonSlots(calendars, Long.parseLong(tokens[2]), tokens[6], tokens[8],
+        workStart, workEnd, limit);
+  }
 }
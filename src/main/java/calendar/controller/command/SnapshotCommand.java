@@ -0,0 +1,31 @@
+package calendar.controller.command;
+
+import calendar.controller.CalendarController;
+import calendar.view.exceptions.InvalidCommandException;
+
+/** Concrete implementation of the save and load snapshot commands. */
+public class SnapshotCommand implements Command {
+  private String[] tokens;
+  private CalendarController controller;
+
+  /** Constructor for the snapshot command. */
+  public SnapshotCommand(String[] tokens, CalendarController controller) {
+    this.tokens = tokens;
+    this.controller = controller;
+  }
+
+  /** Executes the snapshot command. */
+  @Override
+  public String execute() throws Exception {
+    if (tokens.length < 3 || !tokens[1].equalsIgnoreCase("snapshot")) {
+      throw new InvalidCommandException(
+          "snapshot command must be 'save snapshot <filename>' or 'load snapshot <filename>'");
+    }
+    String fileName = tokens[2];
+    if (tokens[0].equalsIgnoreCase("save")) {
+      return "Snapshot saved at: " + controller.saveSnapshot(fileName);
+    }
+    int count = controller.loadSnapshot(fileName);
+    return "Loaded " + count + " calendar(s) from snapshot: " + fileName;
+  }
+}
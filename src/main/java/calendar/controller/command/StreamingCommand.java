@@ -0,0 +1,7 @@
+package calendar.controller.command;
+
+/** A command that can write its output as it is produced instead of returning it whole. */
+public interface StreamingCommand extends Command {
+  /** Executes the command, writing its output to out. */
+  void execute(Appendable out) throws Exception;
+}
@@ -2,58 +2,287 @@ package calendar.controller.export;
 
 import calendar.model.Calendar;
 import calendar.model.event.Event;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 
 /**
  * Exports a calendar to a CSV file formatted for Google Calendar import.
+ *
+ * <p>Rows are encoded straight into a reusable byte buffer that is flushed through a file
+ * channel. Dates and times are written digit by digit from the events' epoch minutes, and text
+ * fields are quoted, with embedded quotes doubled, and encoded as UTF-8 once per distinct string.
+ * Incremental exports write only the events changed since the previous one, tracked by the
+ * calendar's modification sequence numbers.
  */
 public class CSVCalendarExporter implements CalendarExporter {
+  private static final int MINUTES_PER_DAY = 24 * 60;
+  private static final int BUFFER_BYTES = 1 << 18;
+  // Distinct strings whose encoded bytes are kept; calendars repeat a few strings many times.
+  private static final int MAX_CACHED = 1 << 16;
+  private static final byte[] HEADER = ("\"Subject\",\"Start Date\",\"Start Time\",\"End Date\","
+      + "\"End Time\",\"All Day Event\",\"Description\",\"Location\",\"Private\"")
+      .getBytes(StandardCharsets.UTF_8);
+  private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+  private static final byte[] TRUE = "\"True\"".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] FALSE = "\"False\"".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] EMPTY = "\"\"".getBytes(StandardCharsets.UTF_8);
+
+  // Bounds of a whole-calendar export.
+  private static final LocalDateTime EARLIEST = LocalDateTime.of(1, 1, 1, 0, 0);
+  private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59);
+  private static final String MANIFEST_SUFFIX = ".manifest";
+  private static final String CALENDAR_KEY = "calendar";
+  private static final String CHANGE_LOG_KEY = "changeLog";
+  private static final String SEQUENCE_KEY = "sequence";
+
+  private long lastEvents;
+  private long lastNanos;
+  private String lastScope = "";
 
   /**
    * Exports the given calendar to a CSV file.
    */
   @Override
   public String export(Calendar calendar, String fileName) throws IOException {
-    String absPath = Paths.get(fileName).toAbsolutePath().toString();
-    DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("MM/dd/yyyy");
-    DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
-    try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-      // Write header with all fields quoted.
-      writer.write("\"Subject\",\"Start Date\",\"Start Time\",\"End Date\",\"End Time\",\"All Day Event\",\"Description\",\"Location\",\"Private\"");
-      writer.newLine();
-      // Retrieve all events using a wide range.
-      List<Event> events = calendar.getEventsBetween(
-          LocalDateTime.of(1, 1, 1, 0, 0),
-          LocalDateTime.of(9999, 12, 31, 23, 59)
-      );
-      for (Event event : events) {
-        String subject = event.getName();
-        String startDate = dateFormatter.format(event.getStart());
-        String endDate = dateFormatter.format(event.getEnd());
-        String startTime = timeFormatter.format(event.getStart());
-        String endTime = timeFormatter.format(event.getEnd());
-        boolean isAllDay = (event.getStart().getHour() == 0 && event.getStart().getMinute() == 0 &&
-            event.getEnd().getHour() == 23 && event.getEnd().getMinute() == 59);
-        String allDay = isAllDay ? "True" : "False";
-        if (isAllDay) {
-          startTime = "";
-          endTime = "";
-        }
-        String isPrivate = (!event.isPublic()) ? "True" : "False";
-        String description = event.getDescription();
-        String location = event.getLocation();
-        // Wrap each field in quotes.
-        writer.write(String.format("\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\"",
-            subject, startDate, startTime, endDate, endTime, allDay, description, location, isPrivate));
-        writer.newLine();
+    return export(calendar, fileName, EARLIEST, LATEST);
+  }
+
+  /**
+   * Exports the events overlapping the window to a CSV file. They are streamed in start order
+   * from the calendar's time index a page at a time, so the cost follows the window's events and
+   * not the calendar's.
+   */
+  @Override
+  public String export(Calendar calendar, String fileName, LocalDateTime start, LocalDateTime end)
+      throws IOException {
+    Path path = Paths.get(fileName).toAbsolutePath();
+    long began = System.nanoTime();
+    lastEvents = write(path, calendar.iterateBetween(start, end));
+    lastNanos = System.nanoTime() - began;
+    lastScope = start.equals(EARLIEST) && end.equals(LATEST) ? ""
+        : " between " + start + " and " + end;
+    return path.toString();
+  }
+
+  /**
+   * Exports the events changed since the last export to the same file. The manifest, named after
+   * the file with a ".manifest" suffix, records the calendar's change log and the modification
+   * sequence number exported up to; it is replaced only after the CSV file is written, so a failed
+   * export is retried in full by the next one.
+   */
+  @Override
+  public String exportChanges(Calendar calendar, String fileName) throws IOException {
+    Path path = Paths.get(fileName).toAbsolutePath();
+    Path manifest = path.resolveSibling(path.getFileName() + MANIFEST_SUFFIX);
+    long began = System.nanoTime();
+    long since = lastExported(manifest, calendar);
+    long seq;
+    if (since < 0) {
+      // Read the sequence number first: changes made during the scan are exported again later.
+      seq = calendar.currentChangeSequence();
+      lastEvents = write(path, calendar.iterateBetween(EARLIEST, LATEST));
+      lastScope = " (all: no manifest for this calendar)";
+    } else {
+      List<Event> changed = new ArrayList<>();
+      seq = calendar.collectChangesSince(since, changed);
+      lastEvents = write(path, changed.iterator());
+      lastScope = " changed since sequence " + since;
+    }
+    Properties properties = new Properties();
+    properties.setProperty(CALENDAR_KEY, calendar.getName());
+    properties.setProperty(CHANGE_LOG_KEY, calendar.getChangeLogId());
+    properties.setProperty(SEQUENCE_KEY, Long.toString(seq));
+    Path temp = manifest.resolveSibling(manifest.getFileName() + ".tmp");
+    try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+      properties.store(out, "Last incremental export of " + path.getFileName());
+    }
+    Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    lastNanos = System.nanoTime() - began;
+    return path.toString();
+  }
+
+  /**
+   * Returns the sequence number the manifest says was exported, or -1 if there is no manifest or
+   * it was written for another calendar or change log.
+   */
+  private static long lastExported(Path manifest, Calendar calendar) throws IOException {
+    if (!Files.exists(manifest)) {
+      return -1;
+    }
+    Properties properties = new Properties();
+    try (Reader in = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+      properties.load(in);
+    }
+    if (!calendar.getChangeLogId().equals(properties.getProperty(CHANGE_LOG_KEY))) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(properties.getProperty(SEQUENCE_KEY, "-1"));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /** Writes the header and a row per event to the file, replacing it; returns the row count. */
+  private static long write(Path path, Iterator<Event> events) throws IOException {
+    long count = 0;
+    Map<String, byte[]> encoded = new HashMap<>();
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      put(channel, buffer, HEADER);
+      put(channel, buffer, NEWLINE);
+      while (events.hasNext()) {
+        Event event = events.next();
+        long start = event.getStartMinute();
+        long end = event.getEndMinute();
+        boolean allDay = Math.floorMod(start, MINUTES_PER_DAY) == 0
+            && Math.floorMod(end, MINUTES_PER_DAY) == MINUTES_PER_DAY - 1;
+        put(channel, buffer, text(encoded, event.getName()));
+        ensure(channel, buffer, 64);
+        buffer.put((byte) ',');
+        putDate(buffer, start);
+        buffer.put((byte) ',');
+        putTime(buffer, start, allDay);
+        buffer.put((byte) ',');
+        putDate(buffer, end);
+        buffer.put((byte) ',');
+        putTime(buffer, end, allDay);
+        buffer.put((byte) ',');
+        buffer.put(allDay ? TRUE : FALSE);
+        buffer.put((byte) ',');
+        put(channel, buffer, text(encoded, event.getDescription()));
+        ensure(channel, buffer, 1);
+        buffer.put((byte) ',');
+        put(channel, buffer, text(encoded, event.getLocation()));
+        ensure(channel, buffer, 16);
+        buffer.put((byte) ',');
+        buffer.put(event.isPublic() ? FALSE : TRUE);
+        buffer.put(NEWLINE);
+        count++;
+      }
+      flush(channel, buffer);
+    }
+    return count;
+  }
+
+  /** Describes the last export: how many events it wrote and how fast. */
+  @Override
+  public String describeLastExport() {
+    long millis = lastNanos / 1_000_000;
+    long perSecond = lastNanos == 0 ? 0 : lastEvents * 1_000_000_000L / lastNanos;
+    return lastEvents + " events" + lastScope + " in " + millis + " ms (" + perSecond
+        + " events/sec)";
+  }
+
+  /** Returns the quoted, escaped UTF-8 bytes of a text field, an empty field for null. */
+  private static byte[] text(Map<String, byte[]> encoded, String value) {
+    if (value == null) {
+      return EMPTY;
+    }
+    byte[] bytes = encoded.get(value);
+    if (bytes == null) {
+      bytes = ("\"" + value.replace("\"", "\"\"") + "\"").getBytes(StandardCharsets.UTF_8);
+      if (encoded.size() < MAX_CACHED) {
+        encoded.put(value, bytes);
+      }
+    }
+    return bytes;
+  }
+
+  /** Writes the quoted MM/dd/yyyy date of an epoch minute. */
+  private static void putDate(ByteBuffer buffer, long minute) {
+    // Civil date from the epoch day, after Howard Hinnant's civil_from_days.
+    long z = Math.floorDiv(minute, MINUTES_PER_DAY) + 719468;
+    long era = Math.floorDiv(z, 146097);
+    long doe = z - era * 146097;
+    long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+    long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+    long mp = (5 * doy + 2) / 153;
+    int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+    int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+    int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+    buffer.put((byte) '"');
+    putDigits(buffer, month, 2);
+    buffer.put((byte) '/');
+    putDigits(buffer, day, 2);
+    buffer.put((byte) '/');
+    putDigits(buffer, year, 4);
+    buffer.put((byte) '"');
+  }
+
+  /** Writes the quoted HH:mm time of an epoch minute, or an empty field for all-day events. */
+  private static void putTime(ByteBuffer buffer, long minute, boolean allDay) {
+    buffer.put((byte) '"');
+    if (!allDay) {
+      int ofDay = Math.floorMod(minute, MINUTES_PER_DAY);
+      putDigits(buffer, ofDay / 60, 2);
+      buffer.put((byte) ':');
+      putDigits(buffer, ofDay % 60, 2);
+    }
+    buffer.put((byte) '"');
+  }
+
+  /** Writes a non-negative number zero-padded to at least the given width. */
+  private static void putDigits(ByteBuffer buffer, int value, int width) {
+    int digits = 1;
+    for (int rest = value / 10; rest > 0; rest /= 10) {
+      digits++;
+    }
+    for (int i = digits; i < width; i++) {
+      buffer.put((byte) '0');
+    }
+    int at = buffer.position() + digits;
+    buffer.position(at);
+    for (int i = 1; i <= digits; i++) {
+      buffer.put(at - i, (byte) ('0' + value % 10));
+      value /= 10;
+    }
+  }
+
+  private static void put(FileChannel channel, ByteBuffer buffer, byte[] bytes)
+      throws IOException {
+    if (bytes.length > buffer.capacity()) {
+      flush(channel, buffer);
+      ByteBuffer large = ByteBuffer.wrap(bytes);
+      while (large.hasRemaining()) {
+        channel.write(large);
       }
+      return;
+    }
+    ensure(channel, buffer, bytes.length);
+    buffer.put(bytes);
+  }
+
+  private static void ensure(FileChannel channel, ByteBuffer buffer, int bytes)
+      throws IOException {
+    if (buffer.remaining() < bytes) {
+      flush(channel, buffer);
+    }
+  }
+
+  private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
     }
-    return absPath;
+    buffer.clear();
   }
 }
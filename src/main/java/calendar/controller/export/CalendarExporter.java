@@ -8,4 +8,22 @@ public interface CalendarExporter {
    * Exports the given calendar to the specified file.
    */
   String export(calendar.model.Calendar calendar, String fileName) throws Exception;
+
+  /**
+   * Exports the events of the given calendar overlapping the window from start to end.
+   */
+  String export(calendar.model.Calendar calendar, String fileName,
+      java.time.LocalDateTime start, java.time.LocalDateTime end) throws Exception;
+
+  /**
+   * Exports only the events of the calendar added or edited since the last such export to the
+   * same file, as recorded in a manifest next to it. Without a manifest for this calendar, every
+   * event is exported.
+   */
+  String exportChanges(calendar.model.Calendar calendar, String fileName) throws Exception;
+
+  /**
+   * Describes the last export, such as how many events it wrote and how fast.
+   */
+  String describeLastExport();
 }
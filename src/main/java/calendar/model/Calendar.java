@@ -4,21 +4,97 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import calendar.model.event.AbstractCalendarEvent;
+import calendar.model.event.EpochMinutes;
 import calendar.model.event.Event;
+import calendar.model.event.EventPayload;
+import calendar.model.event.RecurringEvent;
+import calendar.model.index.BusyBitmap;
+import calendar.model.index.ModificationLog;
+import calendar.model.store.EventStore;
+import calendar.model.store.StorageEngine;
+import calendar.model.store.StringDictionary;
 
-/** Represents a calendar containing events with a unique name and timezone. */
+/**
+ * Represents a calendar containing events with a unique name and timezone.
+ *
+ * <p>A calendar is safe for concurrent use. Queries share a read lock and never block each
+ * other; additions and edits take the write lock, so a conflict check and the insert it guards
+ * happen atomically.
+ */
 public class Calendar {
-  private List<Event> events = new ArrayList<>();
-  private String name;
-  private ZoneId timezone;
+  private static final Comparator<Event> BY_START = Comparator.comparingLong(Event::getStartMinute);
+  // Events fetched per read-lock acquisition by the query cursors.
+  private static final int PAGE_SIZE = 512;
+  // Stream slices shorter than a day are not split further.
+  private static final long MIN_SPLIT_MINUTES = 24L * 60L;
+
+  private final EventStore store;
+  private final StampedLock lock = new StampedLock();
+  private volatile String name;
+  private volatile ZoneId timezone;
+  // Next event id to assign; guarded by the write lock.
+  private long nextId = 1;
+  // Optional per-day busy minutes, kept in step with every insert; null when disabled.
+  private BusyBitmap busyBitmap;
+  // Ids added or edited by each change, for incremental exports; guarded by the write lock.
+  private final ModificationLog changes = new ModificationLog();
+  // Names this calendar's change log, so sequence numbers from another one are not trusted.
+  private final String changeLogId = UUID.randomUUID().toString();
 
   /** Constructs a Calendar with the specified name and timezone. */
   public Calendar(String name, ZoneId timezone) {
+    this(name, timezone, StorageEngine.INDEXED.create(new StringDictionary()));
+  }
+
+  /** Constructs a Calendar with the specified name and timezone backed by the given store. */
+  public Calendar(String name, ZoneId timezone, EventStore store) {
     this.name = name;
     this.timezone = timezone;
+    this.store = store;
+  }
+
+  /**
+   * Returns the dictionary of the store, used to canonicalize event names, descriptions and
+   * locations. Calendars whose stores share a dictionary share one instance of every equal string.
+   */
+  public StringDictionary getStringDictionary() {
+    return store.strings();
+  }
+
+  /** Returns the storage engine backing this calendar. */
+  public StorageEngine getStorageEngine() {
+    return store.engine();
+  }
+
+  /** Returns the number of events in the calendar. */
+  public int size() {
+    long stamp = lock.tryOptimisticRead();
+    int size = store.size();
+    if (lock.validate(stamp)) {
+      return size;
+    }
+    stamp = lock.readLock();
+    try {
+      return store.size();
+    } finally {
+      lock.unlockRead(stamp);
+    }
   }
 
   /** Returns the calendar name. */
@@ -52,121 +128,612 @@ public class Calendar {
     }
   }
 
-  /** Adds an event to the calendar, checking conflicts if autoDecline is true. */
-  public void addEvent(Event event, boolean autoDecline) throws Exception {
-    if (autoDecline) {
-      for (Event e : events) {
-        if (conflict(e, event)) {
-          throw new Exception("Event conflict detected.");
-        }
+  /**
+   * Adds an event to the calendar, checking conflicts if autoDecline is true. Returns the id
+   * assigned to the event.
+   */
+  public long addEvent(Event event, boolean autoDecline) throws Exception {
+    canonicalize(event);
+    long stamp = lock.writeLock();
+    try {
+      if (autoDecline && conflicts(event)) {
+        throw new Exception("Event conflict detected.");
       }
+      long id = assignIds(event, 1);
+      store.add(event);
+      markBusy(event);
+      changes.next();
+      changes.touch(id, 1);
+      return id;
+    } finally {
+      lock.unlockWrite(stamp);
     }
-    events.add(event);
   }
 
-  /** Returns the list of events on a given date. */
-  public List<Event> getEventsOn(LocalDate date) {
-    List<Event> result = new ArrayList<>();
-    for (Event e : events) {
-      if (e.getStart().toLocalDate().equals(date)) {
-        result.add(e);
+  /**
+   * Adds a batch of events. If autoDecline is true, the batch is sorted once and swept against
+   * itself and the events already in its time span, and the whole batch is rejected if any of
+   * them conflicts. The events get consecutive ids in start order; returns the first one, or 0
+   * for an empty batch.
+   */
+  public long addEvents(Collection<? extends Event> events, boolean autoDecline) throws Exception {
+    if (events.isEmpty()) {
+      return 0;
+    }
+    List<Event> batch = new ArrayList<>(events);
+    for (Event event : batch) {
+      canonicalize(event);
+    }
+    batch.sort(BY_START);
+    long stamp = lock.writeLock();
+    try {
+      if (autoDecline && sweepConflicts(batch)) {
+        throw new Exception("Event conflict detected.");
       }
+      long first = nextId;
+      for (Event event : batch) {
+        assignIds(event, 1);
+      }
+      store.addAll(batch);
+      for (Event event : batch) {
+        markBusy(event);
+      }
+      changes.next();
+      changes.touch(first, batch.size());
+      return first;
+    } finally {
+      lock.unlockWrite(stamp);
     }
-    return result;
   }
 
-  /** Returns the list of events between the given start and end date-times. */
-  public List<Event> getEventsBetween(LocalDateTime start, LocalDateTime end) {
-    List<Event> result = new ArrayList<>();
-    for (Event e : events) {
-      if (!e.getStart().isAfter(end) && !e.getEnd().isBefore(start)) {
-        result.add(e);
+  /**
+   * Adds a recurring series. If autoDecline is true, the instances are swept against the calendar
+   * and against each other, and the whole series is rejected if any of them conflicts. The
+   * occurrences get consecutive ids in order; returns the first one, or 0 for an empty series.
+   */
+  public long addSeries(RecurringEvent series, boolean autoDecline) throws Exception {
+    if (series.isEmpty()) {
+      return 0;
+    }
+    canonicalize(series);
+    long stamp = lock.writeLock();
+    try {
+      if (autoDecline && sweepConflicts(series.getEventInstances())) {
+        throw new Exception("Event conflict detected.");
       }
+      long id = assignIds(series, series.getOccurrenceCount());
+      store.addSeries(series);
+      if (busyBitmap != null) {
+        for (Event instance : series.getEventInstances()) {
+          markBusy(instance);
+        }
+      }
+      changes.next();
+      changes.touch(id, series.getOccurrenceCount());
+      return id;
+    } finally {
+      lock.unlockWrite(stamp);
     }
-    return result;
   }
 
-  /** Returns true if an event covers the given date-time. */
-  public boolean isBusy(LocalDateTime dateTime) {
-    for (Event e : events) {
-      if (!dateTime.isBefore(e.getStart()) && !dateTime.isAfter(e.getEnd())) {
+  /**
+   * Returns true if events in a batch ordered by start overlap each other or any stored event.
+   * The stored events in the batch's span are fetched once, already ordered by start, and merged
+   * with the batch while tracking the latest end seen on each side.
+   */
+  private boolean sweepConflicts(List<? extends Event> batch) {
+    long batchEnd = Long.MIN_VALUE;
+    for (Event event : batch) {
+      batchEnd = Math.max(batchEnd, event.getEndMinute());
+    }
+    List<Event> stored = store.eventsBetween(
+        batch.get(0).getStart(), EpochMinutes.toDateTime(batchEnd));
+    long storedEnd = Long.MIN_VALUE;
+    batchEnd = Long.MIN_VALUE;
+    int i = 0;
+    int j = 0;
+    while (j < stored.size()) {
+      long storedStart = stored.get(j).getStartMinute();
+      if (i < batch.size() && batch.get(i).getStartMinute() < storedStart) {
+        long start = batch.get(i).getStartMinute();
+        if (start <= batchEnd || start <= storedEnd) {
+          return true;
+        }
+        batchEnd = Math.max(batchEnd, batch.get(i++).getEndMinute());
+      } else {
+        if (storedStart <= batchEnd) {
+          return true;
+        }
+        storedEnd = Math.max(storedEnd, stored.get(j++).getEndMinute());
+      }
+    }
+    for (; i < batch.size(); i++) {
+      long start = batch.get(i).getStartMinute();
+      if (start <= batchEnd || start <= storedEnd) {
         return true;
       }
+      batchEnd = Math.max(batchEnd, batch.get(i).getEndMinute());
     }
     return false;
   }
 
-  /** Checks if two events conflict. */
-  private boolean conflict(Event e1, Event e2) {
-    return !(e2.getEnd().isBefore(e1.getStart()) || e2.getStart().isAfter(e1.getEnd()));
+  /**
+   * Restores events saved from another calendar, keeping their ids and skipping conflict checks.
+   * The calendar should be empty; the next event added afterwards gets nextId.
+   */
+  public void restore(List<? extends Event> singles, List<RecurringEvent> series, long nextId) {
+    List<Event> batch = new ArrayList<>(singles);
+    for (Event event : batch) {
+      canonicalize(event);
+    }
+    batch.sort(BY_START);
+    for (RecurringEvent rule : series) {
+      canonicalize(rule);
+    }
+    long stamp = lock.writeLock();
+    try {
+      store.addAll(batch);
+      for (RecurringEvent rule : series) {
+        store.addSeries(rule);
+      }
+      this.nextId = Math.max(this.nextId, nextId);
+      if (busyBitmap != null) {
+        for (Event event : store.eventsBetween(LocalDateTime.MIN, LocalDateTime.MAX)) {
+          markBusy(event);
+        }
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
   }
 
-  /** Edits a single event matching name and start/end times. */
-  public boolean editSingleEvent(
-      String property, String name, LocalDateTime start, LocalDateTime end, String newValue) {
-    for (Event event : events) {
-      if (event.getName().equals(name)
-          && event.getStart().equals(start)
-          && event.getEnd().equals(end)) {
-        updateProperty((AbstractCalendarEvent) event, property, newValue);
-        return true;
+  /**
+   * Visits the stored events under the read lock, as the store keeps them: single events in start
+   * order, then recurring series as rules. Returns the next id the calendar would assign, read
+   * under the same lock.
+   */
+  public long forEachStored(Consumer<Event> singles, Consumer<RecurringEvent> series) {
+    long stamp = lock.readLock();
+    try {
+      store.forEachStored(singles, series);
+      return nextId;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Returns the id of this calendar's change log. Modification sequence numbers only compare
+   * within one log; a calendar restored from a snapshot or a journal starts a new one.
+   */
+  public String getChangeLogId() {
+    return changeLogId;
+  }
+
+  /** Returns the modification sequence number of the latest change, read under the read lock. */
+  public long currentChangeSequence() {
+    long stamp = lock.readLock();
+    try {
+      return changes.current();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Adds to out the events added or edited after the given modification sequence number, ordered
+   * by start, and returns the sequence number of the latest change, read under the same lock.
+   * Passing that number back later yields only what changed in between.
+   */
+  public long collectChangesSince(long seq, List<Event> out) {
+    int from = out.size();
+    long stamp = lock.readLock();
+    try {
+      Set<Long> seen = new HashSet<>();
+      changes.forEachSince(seq, id -> {
+        if (seen.add(id)) {
+          Event event = store.byId(id);
+          if (event != null) {
+            out.add(event);
+          }
+        }
+      });
+      out.subList(from, out.size()).sort(BY_START);
+      return changes.current();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /** Reserves count consecutive ids and gives the first to the event; returns it. */
+  private long assignIds(Event event, int count) {
+    long id = nextId;
+    nextId += count;
+    if (event instanceof AbstractCalendarEvent) {
+      ((AbstractCalendarEvent) event).setId(id);
+    }
+    return id;
+  }
+
+  private void markBusy(Event event) {
+    if (busyBitmap != null) {
+      busyBitmap.mark(event.getStartMinute(), event.getEndMinute());
+    }
+  }
+
+  /**
+   * Turns the per-day busy bitmaps on or off. Turning them on marks every stored event once;
+   * afterwards inserts keep them in step and {@link #isBusy} is a single bit test. Turning them
+   * off drops them.
+   */
+  public void setBusyBitmap(boolean enabled) {
+    long stamp = lock.writeLock();
+    try {
+      if (!enabled) {
+        busyBitmap = null;
+      } else if (busyBitmap == null) {
+        busyBitmap = new BusyBitmap();
+        for (Event event : store.eventsBetween(LocalDateTime.MIN, LocalDateTime.MAX)) {
+          markBusy(event);
+        }
       }
+    } finally {
+      lock.unlockWrite(stamp);
     }
-    return false;
   }
 
-  /** Edits events with the given name and start time. */
-  public int editEventsFrom(String property, String name, LocalDateTime start, String newValue) {
-    int count = 0;
-    for (Event event : events) {
-      if (event.getName().equals(name)
-          && (event.getStart().equals(start) || event.getStart().isAfter(start))) {
-        updateProperty((AbstractCalendarEvent) event, property, newValue);
-        count++;
+  /** Returns true if busy lookups use the per-day bitmaps. */
+  public boolean hasBusyBitmap() {
+    long stamp = lock.readLock();
+    try {
+      return busyBitmap != null;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /** Describes how many days have a busy bitmap and roughly how much memory they take. */
+  public String busyBitmapReport() {
+    long stamp = lock.readLock();
+    try {
+      if (busyBitmap == null) {
+        return "busy bitmap off";
       }
+      return "busy bitmap on: " + busyBitmap.days() + " days, about "
+          + busyBitmap.memoryBytes() + " bytes";
+    } finally {
+      lock.unlockRead(stamp);
     }
-    return count;
   }
 
-  /** Edits all events with the given name. */
-  public int editEvents(String property, String name, String newValue) {
-    int count = 0;
-    for (Event event : events) {
-      if (event.getName().equals(name)) {
-        updateProperty((AbstractCalendarEvent) event, property, newValue);
-        count++;
+  /** Replaces the event's text fields by their canonical instances. */
+  private void canonicalize(Event event) {
+    if (event instanceof AbstractCalendarEvent) {
+      AbstractCalendarEvent e = (AbstractCalendarEvent) event;
+      StringDictionary strings = store.strings();
+      String name = strings.intern(e.getName());
+      String description = strings.intern(e.getDescription());
+      String location = strings.intern(e.getLocation());
+      if (name != e.getName() || description != e.getDescription()
+          || location != e.getLocation()) {
+        e.setPayload(new EventPayload(name, description, location, e.isPublic()));
       }
     }
-    return count;
   }
 
-  /** Updates an event property based on a string identifier. */
-  private void updateProperty(AbstractCalendarEvent event, String property, String newValue) {
+  /** Returns the canonical instance of a new property value if the property is text. */
+  private String canonicalValue(String property, String newValue) {
     switch (property.toLowerCase()) {
       case "name":
-        event.setName(newValue);
-        break;
       case "description":
-        event.setDescription(newValue);
-        break;
       case "location":
-        event.setLocation(newValue);
-        break;
-      case "ispublic":
-        event.setIsPublic(Boolean.parseBoolean(newValue));
-        break;
+        return store.strings().intern(newValue);
       default:
-        break;
+        return newValue;
+    }
+  }
+
+  /** Returns true if the event overlaps any event already in the calendar. */
+  private boolean conflicts(Event event) {
+    return store.overlaps(event.getStartMinute(), event.getEndMinute());
+  }
+
+  /** Returns the events starting on a given date, ordered by start. */
+  public List<Event> getEventsOn(LocalDate date) {
+    long stamp = lock.readLock();
+    try {
+      return store.eventsOn(date);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /** Returns the events overlapping the given start and end date-times, ordered by start. */
+  public List<Event> getEventsBetween(LocalDateTime start, LocalDateTime end) {
+    long stamp = lock.readLock();
+    try {
+      return store.eventsBetween(start, end);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Returns the events starting on a given date lazily, ordered by start. See
+   * {@link #iterateBetween} for how the cursor reads the calendar.
+   */
+  public Iterator<Event> iterateOn(LocalDate date) {
+    LocalDateTime dayStart = date.atStartOfDay();
+    return new EventCursor(dayStart, date.atTime(23, 59), EpochMinutes.of(dayStart));
+  }
+
+  /**
+   * Returns the events overlapping the given start and end date-times lazily, ordered by start.
+   * The cursor reads the calendar a page at a time, each page under the read lock, so at most one
+   * page is held in memory and writers can run between pages. Events added behind the cursor are
+   * not seen; events added ahead of it may be.
+   */
+  public Iterator<Event> iterateBetween(LocalDateTime start, LocalDateTime end) {
+    return new EventCursor(start, end, Long.MIN_VALUE);
+  }
+
+  /** Pages through the store's start-ordered iteration, resuming after the last event handed out. */
+  private final class EventCursor implements Iterator<Event> {
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+    private final long minStart;
+    // Start of the last event handed out and the ids handed out with that start.
+    private long resumeAt = Long.MIN_VALUE;
+    private final Set<Long> seenAtResume = new HashSet<>();
+    private Iterator<Event> page = Collections.emptyIterator();
+    private boolean started;
+    private boolean exhausted;
+
+    private EventCursor(LocalDateTime start, LocalDateTime end, long minStart) {
+      this.start = start;
+      this.end = end;
+      this.minStart = minStart;
+    }
+
+    private void fetch() {
+      List<Event> batch = new ArrayList<>(PAGE_SIZE);
+      long stamp = lock.readLock();
+      try {
+        Iterator<Event> events = store.iterateBetween(
+            started ? EpochMinutes.toDateTime(resumeAt) : start, end);
+        while (batch.size() < PAGE_SIZE && events.hasNext()) {
+          Event event = events.next();
+          long eventStart = event.getStartMinute();
+          if (eventStart < minStart || (started && (eventStart < resumeAt
+              || (eventStart == resumeAt && seenAtResume.contains(event.getId()))))) {
+            continue;
+          }
+          batch.add(event);
+        }
+        exhausted = !events.hasNext();
+      } finally {
+        lock.unlockRead(stamp);
+      }
+      started = true;
+      page = batch.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!page.hasNext() && !exhausted) {
+        fetch();
+      }
+      return page.hasNext();
+    }
+
+    @Override
+    public Event next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Event event = page.next();
+      long eventStart = event.getStartMinute();
+      if (eventStart != resumeAt) {
+        resumeAt = eventStart;
+        seenAtResume.clear();
+      }
+      seenAtResume.add(event.getId());
+      return event;
+    }
+  }
+
+  /**
+   * Returns a stream of the events overlapping the given start and end date-times, ordered by
+   * start, that can be made parallel. The scan is split on time boundaries, and each part reads
+   * the calendar a page at a time like {@link #iterateBetween}, so no lock is held between pages
+   * and the stream need not be closed.
+   */
+  public Stream<Event> streamBetween(LocalDateTime start, LocalDateTime end) {
+    return StreamSupport.stream(
+        new PageSpliterator(EpochMinutes.of(start), Long.MIN_VALUE, EpochMinutes.of(end), size()),
+        false);
+  }
+
+  /**
+   * Spliterator over the events overlapping a window, split on time boundaries. Each part owns the
+   * events starting in its own slice of the window; the first part also owns the events that
+   * start before the window and run into it. A part pages through its slice with an event cursor.
+   */
+  private final class PageSpliterator implements Spliterator<Event> {
+    private final long from;
+    // Starts owned by this part: [low, high]. Long.MIN_VALUE marks the first part.
+    private long low;
+    private final long high;
+    private long estimate;
+    private Iterator<Event> events;
+
+    private PageSpliterator(long from, long low, long high, long estimate) {
+      this.from = from;
+      this.low = low;
+      this.high = high;
+      this.estimate = estimate;
+    }
+
+    @Override
+    public Spliterator<Event> trySplit() {
+      long sliceStart = Math.max(low, from);
+      if (events != null || high - sliceStart < MIN_SPLIT_MINUTES) {
+        return null;
+      }
+      long mid = sliceStart + (high - sliceStart) / 2;
+      estimate >>>= 1;
+      PageSpliterator prefix = new PageSpliterator(from, low, mid - 1, estimate);
+      low = mid;
+      return prefix;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Event> action) {
+      if (events == null) {
+        // Events overlapping the slice that start in it, or before the window for the first part.
+        events = new EventCursor(EpochMinutes.toDateTime(Math.max(low, from)),
+            EpochMinutes.toDateTime(high), low);
+      }
+      if (!events.hasNext()) {
+        return false;
+      }
+      action.accept(events.next());
+      return true;
+    }
+
+    @Override
+    public long estimateSize() {
+      return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+      return ORDERED | NONNULL;
+    }
+  }
+
+  /** Returns true if an event covers the given date-time. */
+  public boolean isBusy(LocalDateTime dateTime) {
+    long minute = EpochMinutes.of(dateTime);
+    long stamp = lock.readLock();
+    try {
+      if (busyBitmap != null) {
+        return busyBitmap.isBusy(minute);
+      }
+      return store.overlaps(minute, minute);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Returns the busy intervals and free gaps between start and end. The events in the range come
+   * back ordered by start, so one sweep merges every run of overlapping or touching events into a
+   * busy interval and records the gap before it as free. Like event times, both are closed
+   * intervals of minutes, so a free gap runs from the minute after one busy interval to the minute
+   * before the next and never shares a minute with either.
+   */
+  public FreeBusy freeBusy(LocalDateTime start, LocalDateTime end) {
+    List<Event> events;
+    long stamp = lock.readLock();
+    try {
+      events = store.eventsBetween(start, end);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+    long from = EpochMinutes.of(start);
+    long to = EpochMinutes.of(end);
+    List<TimeSlot> busy = new ArrayList<>();
+    List<TimeSlot> free = new ArrayList<>();
+    long freeFrom = from;
+    long busyFrom = 0;
+    long busyTo = Long.MIN_VALUE;
+    for (Event event : events) {
+      long eventStart = Math.max(from, event.getStartMinute());
+      long eventEnd = Math.min(to, event.getEndMinute());
+      if (eventEnd < eventStart) {
+        continue;
+      }
+      if (eventStart > busyTo) {
+        if (busyTo != Long.MIN_VALUE) {
+          busy.add(slot(busyFrom, busyTo));
+          freeFrom = busyTo + 1;
+        }
+        if (eventStart - 1 >= freeFrom) {
+          free.add(slot(freeFrom, eventStart - 1));
+        }
+        busyFrom = eventStart;
+      }
+      busyTo = Math.max(busyTo, eventEnd);
+    }
+    if (busyTo != Long.MIN_VALUE) {
+      busy.add(slot(busyFrom, busyTo));
+      freeFrom = busyTo + 1;
+    }
+    if (to >= freeFrom) {
+      free.add(slot(freeFrom, to));
+    }
+    return new FreeBusy(busy, free);
+  }
+
+  private static TimeSlot slot(long fromMinute, long toMinute) {
+    return new TimeSlot(EpochMinutes.toDateTime(fromMinute), EpochMinutes.toDateTime(toMinute));
+  }
+
+  /** Edits a single event matching name and start/end times. */
+  public boolean editSingleEvent(
+      String property, String name, LocalDateTime start, LocalDateTime end, String newValue) {
+    String value = canonicalValue(property, newValue);
+    long stamp = lock.writeLock();
+    try {
+      changes.next();
+      return store.editSingle(property, name, start, end, value, changes::touch);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /** Edits events with the given name starting at or after the given start time. */
+  public int editEventsFrom(String property, String name, LocalDateTime start, String newValue) {
+    String value = canonicalValue(property, newValue);
+    long stamp = lock.writeLock();
+    try {
+      changes.next();
+      return store.editFrom(property, name, start, value, changes::touch);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /** Edits all events with the given name. */
+  public int editEvents(String property, String name, String newValue) {
+    String value = canonicalValue(property, newValue);
+    long stamp = lock.writeLock();
+    try {
+      changes.next();
+      return store.editAll(property, name, value, changes::touch);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /** Returns the event with the given id, or null if there is none. */
+  public Event findEventById(long id) {
+    long stamp = lock.readLock();
+    try {
+      return store.byId(id);
+    } finally {
+      lock.unlockRead(stamp);
     }
   }
 
   /** Finds an event by its name and start time. */
   public Event findEventByNameAndStart(String eventName, LocalDateTime start) {
-    for (Event e : events) {
-      if (e.getName().equals(eventName) && e.getStart().equals(start)) {
-        return e;
-      }
+    long stamp = lock.readLock();
+    try {
+      return store.find(eventName, start);
+    } finally {
+      lock.unlockRead(stamp);
     }
-    return null;
   }
 }
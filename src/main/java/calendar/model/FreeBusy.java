@@ -0,0 +1,29 @@
+package calendar.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Availability over a range: the coalesced busy intervals and the free gaps between them, both
+ * ordered by start and clipped to the range.
+ */
+public class FreeBusy {
+  private final List<TimeSlot> busy;
+  private final List<TimeSlot> free;
+
+  /** Constructs the availability from its busy intervals and free gaps. */
+  public FreeBusy(List<TimeSlot> busy, List<TimeSlot> free) {
+    this.busy = Collections.unmodifiableList(busy);
+    this.free = Collections.unmodifiableList(free);
+  }
+
+  /** Returns the busy intervals, with overlapping events merged. */
+  public List<TimeSlot> getBusy() {
+    return busy;
+  }
+
+  /** Returns the free gaps between busy intervals. */
+  public List<TimeSlot> getFree() {
+    return free;
+  }
+}
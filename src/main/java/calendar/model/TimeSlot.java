@@ -0,0 +1,32 @@
+package calendar.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * An interval of time between a start and an end date-time.
+ */
+public class TimeSlot {
+  private final LocalDateTime start;
+  private final LocalDateTime end;
+
+  /** Constructs a slot from start to end. */
+  public TimeSlot(LocalDateTime start, LocalDateTime end) {
+    this.start = start;
+    this.end = end;
+  }
+
+  /** Returns the start of the slot. */
+  public LocalDateTime getStart() {
+    return start;
+  }
+
+  /** Returns the end of the slot. */
+  public LocalDateTime getEnd() {
+    return end;
+  }
+
+  @Override
+  public String toString() {
+    return start + " to " + end;
+  }
+}
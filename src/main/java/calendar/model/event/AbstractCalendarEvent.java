@@ -2,14 +2,17 @@ package calendar.model.event;
 
 import java.time.LocalDateTime;
 
-/** Abstract base class for calendar events. */
+/**
+ * Abstract base class for calendar events. Times are fixed once the event is stored and are kept
+ * as epoch minutes, the resolution of every command, so comparing them is plain arithmetic. The
+ * text fields and visibility live in an immutable payload that may be shared with other events;
+ * edits swap in a changed copy, and the reference is volatile so readers on other threads see it.
+ */
 public abstract class AbstractCalendarEvent implements Event {
-  protected String name;
-  protected LocalDateTime start;
-  protected LocalDateTime end;
-  protected String description;
-  protected String location;
-  protected boolean isPublic;
+  protected volatile long id;
+  protected volatile EventPayload payload;
+  protected final long startMinute;
+  protected final long endMinute;
 
   /** Constructs an AbstractCalendarEvent. */
   public AbstractCalendarEvent(
@@ -19,67 +22,105 @@ public abstract class AbstractCalendarEvent implements Event {
       String description,
       String location,
       boolean isPublic) {
-    this.name = name;
-    this.start = start;
-    this.end = end;
-    this.description = description;
-    this.location = location;
-    this.isPublic = isPublic;
+    this(new EventPayload(name, description, location, isPublic), start, end);
+  }
+
+  /** Constructs an AbstractCalendarEvent sharing the given payload. */
+  protected AbstractCalendarEvent(EventPayload payload, LocalDateTime start, LocalDateTime end) {
+    this(payload, EpochMinutes.of(start), EpochMinutes.of(end));
+  }
+
+  /** Constructs an AbstractCalendarEvent sharing the given payload, with times in epoch minutes. */
+  protected AbstractCalendarEvent(EventPayload payload, long startMinute, long endMinute) {
+    this.payload = payload;
+    this.startMinute = startMinute;
+    this.endMinute = endMinute;
+  }
+
+  /** Returns the event payload. */
+  public EventPayload getPayload() {
+    return payload;
+  }
+
+  /** Replaces the event payload. */
+  public void setPayload(EventPayload payload) {
+    this.payload = payload;
+  }
+
+  /** Returns the event id. */
+  @Override
+  public long getId() {
+    return id;
+  }
+
+  /** Sets the event id. */
+  public void setId(long id) {
+    this.id = id;
   }
 
   /** Returns the event name. */
   @Override
   public String getName() {
-    return name;
+    return payload.getName();
   }
 
   /** Returns the start time. */
   @Override
   public LocalDateTime getStart() {
-    return start;
+    return EpochMinutes.toDateTime(startMinute);
   }
 
   /** Returns the end time. */
   @Override
   public LocalDateTime getEnd() {
-    return end;
+    return EpochMinutes.toDateTime(endMinute);
+  }
+
+  @Override
+  public long getStartMinute() {
+    return startMinute;
+  }
+
+  @Override
+  public long getEndMinute() {
+    return endMinute;
   }
 
   /** Returns the event description. */
   @Override
   public String getDescription() {
-    return description;
+    return payload.getDescription();
   }
 
   /** Returns the event location. */
   @Override
   public String getLocation() {
-    return location;
+    return payload.getLocation();
   }
 
   /** Returns true if the event is public. */
   @Override
   public boolean isPublic() {
-    return isPublic;
+    return payload.isPublic();
   }
 
   /** Sets the event name. */
   public void setName(String name) {
-    this.name = name;
+    payload = payload.withName(name);
   }
 
   /** Sets the event description. */
   public void setDescription(String description) {
-    this.description = description;
+    payload = payload.withDescription(description);
   }
 
   /** Sets the event location. */
   public void setLocation(String location) {
-    this.location = location;
+    payload = payload.withLocation(location);
   }
 
   /** Sets whether the event is public. */
   public void setIsPublic(boolean isPublic) {
-    this.isPublic = isPublic;
+    payload = payload.withPublic(isPublic);
   }
 }
@@ -0,0 +1,20 @@
+package calendar.model.event;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/** Converts between date-times and minutes since the epoch, the resolution commands use. */
+public final class EpochMinutes {
+  private EpochMinutes() {
+  }
+
+  /** Returns the epoch minute of the given date-time, discarding seconds. */
+  public static long of(LocalDateTime dateTime) {
+    return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60L);
+  }
+
+  /** Returns the date-time at the given epoch minute. */
+  public static LocalDateTime toDateTime(long epochMinute) {
+    return LocalDateTime.ofEpochSecond(epochMinute * 60L, 0, ZoneOffset.UTC);
+  }
+}
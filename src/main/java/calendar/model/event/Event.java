@@ -4,6 +4,9 @@ import java.time.LocalDateTime;
 
 /** Interface for calendar events. */
 public interface Event {
+  /** Returns the id assigned when the event was stored, or 0 if it has not been stored. */
+  long getId();
+
   /** Returns the event name. */
   String getName();
 
@@ -13,6 +16,12 @@ public interface Event {
   /** Returns the end time. */
   LocalDateTime getEnd();
 
+  /** Returns the start time in minutes since the epoch. */
+  long getStartMinute();
+
+  /** Returns the end time in minutes since the epoch. */
+  long getEndMinute();
+
   /** Returns the event description. */
   String getDescription();
 
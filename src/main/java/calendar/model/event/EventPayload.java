@@ -0,0 +1,61 @@
+package calendar.model.event;
+
+/**
+ * The descriptive fields of an event: name, description, location and visibility. Payloads are
+ * immutable, so the occurrences of a series all share their series' payload, and an edit replaces
+ * the edited event's payload with a changed copy instead of touching the shared one.
+ */
+public final class EventPayload {
+  private final String name;
+  private final String description;
+  private final String location;
+  private final boolean isPublic;
+
+  /** Constructs an EventPayload. */
+  public EventPayload(String name, String description, String location, boolean isPublic) {
+    this.name = name;
+    this.description = description;
+    this.location = location;
+    this.isPublic = isPublic;
+  }
+
+  /** Returns the event name. */
+  public String getName() {
+    return name;
+  }
+
+  /** Returns the event description. */
+  public String getDescription() {
+    return description;
+  }
+
+  /** Returns the event location. */
+  public String getLocation() {
+    return location;
+  }
+
+  /** Returns true if the event is public. */
+  public boolean isPublic() {
+    return isPublic;
+  }
+
+  /** Returns a copy with the given name. */
+  public EventPayload withName(String name) {
+    return new EventPayload(name, description, location, isPublic);
+  }
+
+  /** Returns a copy with the given description. */
+  public EventPayload withDescription(String description) {
+    return new EventPayload(name, description, location, isPublic);
+  }
+
+  /** Returns a copy with the given location. */
+  public EventPayload withLocation(String location) {
+    return new EventPayload(name, description, location, isPublic);
+  }
+
+  /** Returns a copy with the given visibility. */
+  public EventPayload withPublic(boolean isPublic) {
+    return new EventPayload(name, description, location, isPublic);
+  }
+}
@@ -4,15 +4,38 @@ import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.TreeSet;
 
-/** Represents a recurring event composed of multiple single events. */
+/**
+ * Represents a recurring event as a rule: a set of weekdays, a time of day, and either an
+ * occurrence count or an until date. Single event instances are only built for the dates asked
+ * for, and occurrence dates are found by jumping between matching weekdays rather than walking
+ * every day.
+ *
+ * <p>An occurrence edited on its own is detached as an exception: the series records its index
+ * and stops producing it, and the edited occurrence is stored as a single event at the same time
+ * with the same id. Exceptions are sparse, so a series with a few edited occurrences stays one
+ * rule.
+ */
 public class RecurringEvent extends AbstractCalendarEvent {
-  private Set<DayOfWeek> weekdays;
+  private static final long MINUTES_PER_DAY = 24L * 60L;
+
+  private WeekdayMask weekdays;
   private int occurrences;
   private LocalDateTime until;
-  private List<SingleEvent> eventInstances;
+  private long firstDay;
+  private long lastDay;
+  private int count;
+  private int startMinuteOfDay;
+  private int endMinuteOfDay;
+  // Indexes of detached occurrences.
+  private final NavigableSet<Integer> exceptions = new TreeSet<>();
 
   /** Constructs a recurring event using an occurrences count. */
   public RecurringEvent(
@@ -25,10 +48,10 @@ public class RecurringEvent extends AbstractCalendarEvent {
       Set<DayOfWeek> weekdays,
       int occurrences) {
     super(name, start, end, description, location, isPublic);
-    this.weekdays = weekdays;
+    this.weekdays = WeekdayMask.of(weekdays);
     this.occurrences = occurrences;
     this.until = null;
-    generateEventInstances();
+    computeRange();
   }
 
   /** Constructs a recurring event using an until date. */
@@ -42,46 +65,292 @@ public class RecurringEvent extends AbstractCalendarEvent {
       Set<DayOfWeek> weekdays,
       LocalDateTime until) {
     super(name, start, end, description, location, isPublic);
-    this.weekdays = weekdays;
+    this.weekdays = WeekdayMask.of(weekdays);
     this.until = until;
     this.occurrences = 0;
-    generateEventInstances();
+    computeRange();
+  }
+
+  /** Constructs a series with the given payload, weekdays and occurrence count. */
+  private RecurringEvent(EventPayload payload, LocalDateTime start, LocalDateTime end,
+      WeekdayMask weekdays, int occurrences) {
+    super(payload, start, end);
+    this.weekdays = weekdays;
+    this.occurrences = occurrences;
+    this.until = null;
+    computeRange();
+  }
+
+  /**
+   * Rebuilds a stored series from its rule, its id and the indexes of its detached occurrences,
+   * as saved by {@link #getWeekdayBits}, {@link #getOccurrenceCount} and {@link #getExceptions}.
+   */
+  public static RecurringEvent restore(EventPayload payload, long startMinute, long endMinute,
+      int weekdayBits, int occurrences, long id, int[] exceptions) {
+    RecurringEvent series = new RecurringEvent(payload, EpochMinutes.toDateTime(startMinute),
+        EpochMinutes.toDateTime(endMinute), WeekdayMask.ofBits(weekdayBits), occurrences);
+    series.id = id;
+    for (int n : exceptions) {
+      series.exceptions.add(n);
+    }
+    return series;
   }
 
-  /** Generates instances for the recurring event. */
-  private void generateEventInstances() {
-    eventInstances = new ArrayList<>();
-    LocalDate currentDate = start.toLocalDate();
-    int count = 0;
+  /** Finds the first and last occurrence days and the number of occurrences. */
+  private void computeRange() {
+    startMinuteOfDay = (int) Math.floorMod(startMinute, MINUTES_PER_DAY);
+    endMinuteOfDay = (int) Math.floorMod(endMinute, MINUTES_PER_DAY);
+    if (weekdays.isEmpty()) {
+      return;
+    }
+    long startDay = Math.floorDiv(startMinute, MINUTES_PER_DAY);
+    long first = weekdays.nextOnOrAfter(startDay);
+    long total;
     if (until == null) {
-      if (occurrences <= 0) return;
-      while (true) {
-        if (weekdays.contains(currentDate.getDayOfWeek())) {
-          LocalDateTime instanceStart = LocalDateTime.of(currentDate, start.toLocalTime());
-          LocalDateTime instanceEnd = LocalDateTime.of(currentDate, end.toLocalTime());
-          eventInstances.add(
-              new SingleEvent(name, instanceStart, instanceEnd, description, location, isPublic));
-          count++;
-          if (count >= occurrences) break;
+      total = Math.max(occurrences, 0);
+    } else {
+      // The start date is always considered, later dates only up to the until date.
+      long limit = Math.max(startDay, until.toLocalDate().toEpochDay());
+      total = weekdays.countThrough(first, limit);
+    }
+    if (total == 0) {
+      return;
+    }
+    count = (int) total;
+    firstDay = first;
+    lastDay = weekdays.nth(first, total - 1);
+  }
+
+  /** Returns the number of occurrences the rule generates, including detached ones. */
+  public int getOccurrenceCount() {
+    return count;
+  }
+
+  /** Returns the weekdays of the series as bits, Monday being bit zero. */
+  public int getWeekdayBits() {
+    return weekdays.bits();
+  }
+
+  /** Returns the indexes of the detached occurrences in ascending order. */
+  public int[] getExceptions() {
+    return exceptions.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  /** Returns the number of occurrences the series still produces, excluding detached ones. */
+  public int getInstanceCount() {
+    return count - exceptions.size();
+  }
+
+  /**
+   * Returns the index of the occurrence starting exactly at the given date-time, or -1 if the
+   * series produces none there.
+   */
+  public int occurrenceIndexAt(LocalDateTime dateTime) {
+    long offset = EpochMinutes.of(dateTime) - startMinuteOfDay;
+    if (Math.floorMod(offset, MINUTES_PER_DAY) != 0) {
+      return -1;
+    }
+    long day = Math.floorDiv(offset, MINUTES_PER_DAY);
+    return occursOn(day) ? indexOn(day) : -1;
+  }
+
+  /**
+   * Returns the index of the first occurrence starting at or after the given date-time, or the
+   * occurrence count if there is none.
+   */
+  public int firstIndexFrom(LocalDateTime dateTime) {
+    if (isEmpty()) {
+      return 0;
+    }
+    long day = -Math.floorDiv(startMinuteOfDay - EpochMinutes.of(dateTime), MINUTES_PER_DAY);
+    day = weekdays.nextOnOrAfter(Math.max(day, firstDay));
+    return day > lastDay ? count : indexOn(day);
+  }
+
+  /** Detaches the n-th occurrence, so the series no longer produces it. */
+  public void addException(int n) {
+    exceptions.add(n);
+  }
+
+  /**
+   * Splits the series before the n-th occurrence (0 &lt; n &lt; count). This series keeps the
+   * first n occurrences; the returned series holds the rest, with their ids and exceptions.
+   */
+  public RecurringEvent splitAt(int n) {
+    long day = weekdays.nth(firstDay, n);
+    RecurringEvent rest = new RecurringEvent(payload, EpochMinutes.toDateTime(startMinute(day)),
+        EpochMinutes.toDateTime(endMinute(day)), weekdays, count - n);
+    rest.id = id == 0 ? 0 : id + n;
+    NavigableSet<Integer> moved = exceptions.tailSet(n, true);
+    for (int index : moved) {
+      rest.exceptions.add(index - n);
+    }
+    moved.clear();
+    occurrences = n;
+    until = null;
+    count = n;
+    lastDay = weekdays.nth(firstDay, n - 1);
+    return rest;
+  }
+
+  /** Returns true if the series has no occurrences. */
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  /** Returns the start of the first occurrence, or null if there are none. */
+  public LocalDateTime getFirstStart() {
+    return isEmpty() ? null : EpochMinutes.toDateTime(startMinute(firstDay));
+  }
+
+  /** Returns the end of the last occurrence, or null if there are none. */
+  public LocalDateTime getLastEnd() {
+    return isEmpty() ? null : EpochMinutes.toDateTime(endMinute(lastDay));
+  }
+
+  /** Returns the n-th (zero-based) occurrence, or null if it was detached. */
+  public SingleEvent getOccurrence(int n) {
+    if (n < 0 || n >= count) {
+      throw new IndexOutOfBoundsException("Occurrence " + n + " of " + count);
+    }
+    return exceptions.contains(n) ? null : instanceOn(weekdays.nth(firstDay, n));
+  }
+
+  /** Returns the occurrence on the given date, or null if the series does not occur then. */
+  public SingleEvent occurrenceOn(LocalDate date) {
+    long day = date.toEpochDay();
+    return occursOn(day) ? instanceOn(day) : null;
+  }
+
+  /** Returns the occurrence starting exactly at the given date-time, or null if there is none. */
+  public SingleEvent occurrenceAt(LocalDateTime dateTime) {
+    long offset = EpochMinutes.of(dateTime) - startMinuteOfDay;
+    if (Math.floorMod(offset, MINUTES_PER_DAY) != 0) {
+      return null;
+    }
+    long day = Math.floorDiv(offset, MINUTES_PER_DAY);
+    return occursOn(day) ? instanceOn(day) : null;
+  }
+
+  /** Returns the occurrences overlapping the given date-times, ordered by start. */
+  public List<SingleEvent> occurrencesBetween(LocalDateTime from, LocalDateTime to) {
+    List<SingleEvent> result = new ArrayList<>();
+    if (isEmpty()) {
+      return result;
+    }
+    long fromMinute = EpochMinutes.of(from);
+    long toMinute = EpochMinutes.of(to);
+    long last = lastOverlappingDay(toMinute);
+    for (long day = firstOverlappingDay(fromMinute); day <= last; day = weekdays.nextAfter(day)) {
+      if (!isDetached(day)) {
+        result.add(instanceOn(day));
+      }
+    }
+    return result;
+  }
+
+  /** Returns the occurrences overlapping the given date-times lazily, ordered by start. */
+  public Iterator<SingleEvent> occurrenceIterator(LocalDateTime from, LocalDateTime to) {
+    if (isEmpty()) {
+      return Collections.emptyIterator();
+    }
+    long first = firstOverlappingDay(EpochMinutes.of(from));
+    long last = lastOverlappingDay(EpochMinutes.of(to));
+    return new Iterator<SingleEvent>() {
+      private long day = skipDetached(first);
+
+      private long skipDetached(long from) {
+        long next = from;
+        while (next <= last && isDetached(next)) {
+          next = weekdays.nextAfter(next);
         }
-        currentDate = currentDate.plusDays(1);
+        return next;
       }
-    } else {
-      while (true) {
-        if (weekdays.contains(currentDate.getDayOfWeek())) {
-          LocalDateTime instanceStart = LocalDateTime.of(currentDate, start.toLocalTime());
-          LocalDateTime instanceEnd = LocalDateTime.of(currentDate, end.toLocalTime());
-          eventInstances.add(
-              new SingleEvent(name, instanceStart, instanceEnd, description, location, isPublic));
+
+      @Override
+      public boolean hasNext() {
+        return day <= last;
+      }
+
+      @Override
+      public SingleEvent next() {
+        if (day > last) {
+          throw new NoSuchElementException();
         }
-        currentDate = currentDate.plusDays(1);
-        if (currentDate.atStartOfDay().isAfter(until)) break;
+        SingleEvent instance = instanceOn(day);
+        day = skipDetached(weekdays.nextAfter(day));
+        return instance;
       }
-    }
+    };
+  }
+
+  /**
+   * Returns true if any occurrence overlaps the closed minute interval [from, to]. Detached
+   * occurrences count too: they are stored as single events at the same times.
+   */
+  public boolean overlaps(long fromMinute, long toMinute) {
+    return !isEmpty() && firstOverlappingDay(fromMinute) <= lastOverlappingDay(toMinute);
   }
 
-  /** Returns the list of single event instances. */
+  /** Returns every single event instance of the series. */
   public List<SingleEvent> getEventInstances() {
-    return eventInstances;
+    List<SingleEvent> result = new ArrayList<>(count);
+    if (isEmpty()) {
+      return result;
+    }
+    int n = 0;
+    for (long day = firstDay; day <= lastDay; day = weekdays.nextAfter(day), n++) {
+      if (!exceptions.contains(n)) {
+        result.add(instanceOn(day));
+      }
+    }
+    return result;
+  }
+
+  /** Returns the first occurrence day whose end is at or after the given minute. */
+  private long firstOverlappingDay(long fromMinute) {
+    long day = -Math.floorDiv(endMinuteOfDay - fromMinute, MINUTES_PER_DAY);
+    return weekdays.nextOnOrAfter(Math.max(day, firstDay));
+  }
+
+  /** Returns the last day that could hold an occurrence starting at or before the given minute. */
+  private long lastOverlappingDay(long toMinute) {
+    return Math.min(Math.floorDiv(toMinute - startMinuteOfDay, MINUTES_PER_DAY), lastDay);
+  }
+
+  private boolean occursOn(long day) {
+    return !isEmpty() && day >= firstDay && day <= lastDay && weekdays.matches(day)
+        && !isDetached(day);
+  }
+
+  /** Returns the index of the occurrence on a matching day of the series. */
+  private int indexOn(long day) {
+    return (int) (weekdays.countThrough(firstDay, day) - 1);
+  }
+
+  private boolean isDetached(long day) {
+    return !exceptions.isEmpty() && exceptions.contains(indexOn(day));
+  }
+
+  private long startMinute(long day) {
+    return day * MINUTES_PER_DAY + startMinuteOfDay;
+  }
+
+  private long endMinute(long day) {
+    return day * MINUTES_PER_DAY + endMinuteOfDay;
+  }
+
+  /**
+   * Builds the occurrence on the given day. Occurrences share the series payload, so each one only
+   * adds its times and id. A stored series owns a block of consecutive ids, one per occurrence in
+   * order, starting at the series id.
+   */
+  private SingleEvent instanceOn(long day) {
+    SingleEvent instance = new SingleEvent(
+        payload, EpochMinutes.toDateTime(startMinute(day)), EpochMinutes.toDateTime(endMinute(day)));
+    if (id != 0) {
+      instance.setId(id + indexOn(day));
+    }
+    return instance;
   }
 }
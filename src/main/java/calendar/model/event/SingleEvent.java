@@ -14,4 +14,20 @@ public class SingleEvent extends AbstractCalendarEvent {
       boolean isPublic) {
     super(name, start, end, description, location, isPublic);
   }
+
+  /** Constructs a SingleEvent sharing the given payload. */
+  SingleEvent(EventPayload payload, LocalDateTime start, LocalDateTime end) {
+    super(payload, start, end);
+  }
+
+  private SingleEvent(EventPayload payload, long startMinute, long endMinute) {
+    super(payload, startMinute, endMinute);
+  }
+
+  /** Rebuilds a stored event from its payload, its times in epoch minutes and its id. */
+  public static SingleEvent restore(EventPayload payload, long startMinute, long endMinute, long id) {
+    SingleEvent event = new SingleEvent(payload, startMinute, endMinute);
+    event.setId(id);
+    return event;
+  }
 }
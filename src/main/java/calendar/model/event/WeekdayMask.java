@@ -0,0 +1,108 @@
+package calendar.model.event;
+
+import java.time.DayOfWeek;
+import java.util.Set;
+
+/**
+ * A set of weekdays packed into a seven-bit mask, with lookup tables for jumping straight to the
+ * next matching day and for counting or indexing matches arithmetically. Days are epoch days.
+ */
+public final class WeekdayMask {
+  private final int mask;
+  private final int size;
+  // skip[w]: days from a day with weekday w to the first matching day on or after it.
+  private final int[] skip = new int[7];
+  // offsets[w]: day offsets of the matches within the week starting on weekday w.
+  private final int[][] offsets = new int[7][];
+
+  private WeekdayMask(int mask) {
+    this.mask = mask;
+    this.size = Integer.bitCount(mask);
+    for (int w = 0; w < 7; w++) {
+      skip[w] = -1;
+      offsets[w] = new int[size];
+      int found = 0;
+      for (int j = 0; j < 7; j++) {
+        if ((mask & (1 << ((w + j) % 7))) != 0) {
+          if (skip[w] < 0) {
+            skip[w] = j;
+          }
+          offsets[w][found++] = j;
+        }
+      }
+    }
+  }
+
+  /** Returns the mask matching the given weekdays. */
+  public static WeekdayMask of(Set<DayOfWeek> weekdays) {
+    int mask = 0;
+    for (DayOfWeek day : weekdays) {
+      mask |= 1 << (day.getValue() - 1);
+    }
+    return new WeekdayMask(mask);
+  }
+
+  /** Returns the mask with the given bits, Monday being bit zero. */
+  public static WeekdayMask ofBits(int bits) {
+    return new WeekdayMask(bits & 0x7F);
+  }
+
+  /** Returns the raw bits, Monday being bit zero. */
+  public int bits() {
+    return mask;
+  }
+
+  /** Returns the number of weekdays in the mask. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns true if no weekday is set. */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Returns the weekday index of an epoch day, Monday being zero. */
+  public static int weekdayOf(long epochDay) {
+    // 1970-01-01 was a Thursday.
+    return (int) Math.floorMod(epochDay + 3, 7L);
+  }
+
+  /** Returns true if the epoch day falls on a weekday in the mask. */
+  public boolean matches(long epochDay) {
+    return (mask & (1 << weekdayOf(epochDay))) != 0;
+  }
+
+  /** Returns the first matching epoch day on or after the given one. The mask must not be empty. */
+  public long nextOnOrAfter(long epochDay) {
+    return epochDay + skip[weekdayOf(epochDay)];
+  }
+
+  /** Returns the first matching epoch day strictly after the given one. */
+  public long nextAfter(long epochDay) {
+    return nextOnOrAfter(epochDay + 1);
+  }
+
+  /** Returns the n-th (zero-based) matching day counting from a matching anchor day. */
+  public long nth(long anchorDay, long n) {
+    int[] week = offsets[weekdayOf(anchorDay)];
+    return anchorDay + 7L * (n / size) + week[(int) (n % size)];
+  }
+
+  /** Returns the number of matching days in [anchorDay, lastDay] for a matching anchor day. */
+  public long countThrough(long anchorDay, long lastDay) {
+    if (lastDay < anchorDay) {
+      return 0;
+    }
+    long days = lastDay - anchorDay;
+    int[] week = offsets[weekdayOf(anchorDay)];
+    int remainder = (int) (days % 7);
+    long count = (days / 7) * size;
+    for (int offset : week) {
+      if (offset <= remainder) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
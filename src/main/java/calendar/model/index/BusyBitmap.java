@@ -0,0 +1,67 @@
+package calendar.model.index;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Busy minutes as one 1440-bit bitmap per day, so asking whether a minute is busy is a single bit
+ * test. A day's bitmap is allocated when the first event covering it is marked; days without
+ * events have none.
+ */
+public class BusyBitmap {
+  private static final int MINUTES_PER_DAY = 24 * 60;
+  private static final int WORDS_PER_DAY = (MINUTES_PER_DAY + 63) / 64;
+  // The words of a day plus the array header, the boxed key and the hash map entry.
+  private static final long BYTES_PER_DAY = WORDS_PER_DAY * 8L + 16L + 16L + 32L;
+
+  private final Map<Long, long[]> days = new HashMap<>();
+
+  /** Marks the minutes from start to end, both inclusive, as busy. */
+  public void mark(long start, long end) {
+    if (end < start) {
+      return;
+    }
+    for (long day = DayIndex.dayOf(start); day <= DayIndex.dayOf(end); day++) {
+      long dayStart = day * MINUTES_PER_DAY;
+      int from = (int) (Math.max(start, dayStart) - dayStart);
+      int to = (int) (Math.min(end, dayStart + MINUTES_PER_DAY - 1) - dayStart);
+      setRange(days.computeIfAbsent(day, d -> new long[WORDS_PER_DAY]), from, to);
+    }
+  }
+
+  private static void setRange(long[] words, int from, int to) {
+    int first = from >>> 6;
+    int last = to >>> 6;
+    long firstMask = -1L << (from & 63);
+    long lastMask = -1L >>> (63 - (to & 63));
+    if (first == last) {
+      words[first] |= firstMask & lastMask;
+      return;
+    }
+    words[first] |= firstMask;
+    for (int w = first + 1; w < last; w++) {
+      words[w] = -1L;
+    }
+    words[last] |= lastMask;
+  }
+
+  /** Returns true if the given epoch minute is marked busy. */
+  public boolean isBusy(long minute) {
+    long[] words = days.get(DayIndex.dayOf(minute));
+    if (words == null) {
+      return false;
+    }
+    int bit = (int) Math.floorMod(minute, (long) MINUTES_PER_DAY);
+    return (words[bit >>> 6] & (1L << bit)) != 0;
+  }
+
+  /** Returns the number of days with a bitmap. */
+  public int days() {
+    return days.size();
+  }
+
+  /** Returns the approximate heap footprint of the bitmaps in bytes. */
+  public long memoryBytes() {
+    return days.size() * BYTES_PER_DAY;
+  }
+}
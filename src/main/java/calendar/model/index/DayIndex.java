@@ -0,0 +1,81 @@
+package calendar.model.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Buckets values by the epoch day of their start minute. Each bucket is kept sorted by start, so
+ * a single-day lookup touches only that day's values.
+ */
+public class DayIndex<T> {
+  private static final long MINUTES_PER_DAY = 24L * 60L;
+
+  private final NavigableMap<Long, List<Entry<T>>> buckets = new TreeMap<>();
+
+  /** A value together with its start minute. */
+  private static final class Entry<T> {
+    private final long start;
+    private final T value;
+
+    private Entry(long start, T value) {
+      this.start = start;
+      this.value = value;
+    }
+  }
+
+  /** Returns the epoch day containing the given epoch minute. */
+  public static long dayOf(long epochMinute) {
+    return Math.floorDiv(epochMinute, MINUTES_PER_DAY);
+  }
+
+  /** Adds a value starting at the given epoch minute, after any values with the same start. */
+  public void add(long start, T value) {
+    List<Entry<T>> bucket = buckets.computeIfAbsent(dayOf(start), d -> new ArrayList<>());
+    int low = 0;
+    int high = bucket.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (bucket.get(mid).start <= start) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    bucket.add(low, new Entry<>(start, value));
+  }
+
+  /** Removes the given value (compared by identity) that was added with the given start. */
+  public boolean remove(long start, T value) {
+    long day = dayOf(start);
+    List<Entry<T>> bucket = buckets.get(day);
+    if (bucket == null) {
+      return false;
+    }
+    for (int i = 0; i < bucket.size(); i++) {
+      if (bucket.get(i).value == value) {
+        bucket.remove(i);
+        if (bucket.isEmpty()) {
+          buckets.remove(day);
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the values starting on the given epoch day, ordered by start. */
+  public List<T> get(long epochDay) {
+    List<Entry<T>> bucket = buckets.get(epochDay);
+    if (bucket == null) {
+      return Collections.emptyList();
+    }
+    List<T> result = new ArrayList<>(bucket.size());
+    for (Entry<T> entry : bucket) {
+      result.add(entry.value);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,281 @@
+package calendar.model.index;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Augmented AVL interval tree over closed minute intervals. Entries are ordered by start and then
+ * by insertion, and every node tracks the largest end in its subtree so overlap queries can skip
+ * whole subtrees.
+ */
+public class IntervalTree<T> {
+  private Node<T> root;
+  private int size;
+  private long nextSeq;
+  private boolean removed;
+
+  /** A tree node holding one interval. */
+  private static final class Node<T> {
+    private final long start;
+    private final long end;
+    private final long seq;
+    private final T value;
+    private long maxEnd;
+    private int height;
+    private Node<T> left;
+    private Node<T> right;
+
+    private Node(long start, long end, long seq, T value) {
+      this.start = start;
+      this.end = end;
+      this.seq = seq;
+      this.value = value;
+      this.maxEnd = end;
+      this.height = 1;
+    }
+  }
+
+  /** Returns the number of intervals in the tree. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns true if the tree holds no intervals. */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Inserts a value covering the closed interval [start, end]. */
+  public void insert(long start, long end, T value) {
+    root = insert(root, new Node<>(start, end, nextSeq++, value));
+    size++;
+  }
+
+  /** Removes the given value (compared by identity) that was inserted with the given start. */
+  public boolean remove(long start, T value) {
+    removed = false;
+    root = remove(root, start, value);
+    if (removed) {
+      size--;
+    }
+    return removed;
+  }
+
+  /** Returns the values overlapping [from, to], ordered by start time. */
+  public List<T> query(long from, long to) {
+    List<T> result = new ArrayList<>();
+    collect(root, from, to, result);
+    return result;
+  }
+
+  /**
+   * Returns the values overlapping [from, to] lazily, ordered by start time. The iterator walks
+   * the tree in order with an explicit stack, so it holds at most one root-to-leaf path; the tree
+   * must not change while it is in use.
+   */
+  public Iterator<T> iterator(long from, long to) {
+    return new RangeIterator(from, to);
+  }
+
+  /** Returns true if any interval overlaps [from, to]. */
+  public boolean overlaps(long from, long to) {
+    Node<T> node = root;
+    while (node != null) {
+      if (node.start <= to && node.end >= from) {
+        return true;
+      }
+      if (node.left != null && node.left.maxEnd >= from) {
+        // If nothing on the left overlaps, nothing on the right can either.
+        node = node.left;
+      } else if (node.start > to) {
+        return false;
+      } else {
+        node = node.right;
+      }
+    }
+    return false;
+  }
+
+  private void collect(Node<T> node, long from, long to, List<T> out) {
+    if (node == null || node.maxEnd < from) {
+      return;
+    }
+    collect(node.left, from, to, out);
+    if (node.start > to) {
+      return;
+    }
+    if (node.end >= from) {
+      out.add(node.value);
+    }
+    collect(node.right, from, to, out);
+  }
+
+  private Node<T> insert(Node<T> node, Node<T> fresh) {
+    if (node == null) {
+      return fresh;
+    }
+    if (compare(fresh, node) < 0) {
+      node.left = insert(node.left, fresh);
+    } else {
+      node.right = insert(node.right, fresh);
+    }
+    return rebalance(node);
+  }
+
+  private Node<T> remove(Node<T> node, long start, T value) {
+    if (node == null) {
+      return null;
+    }
+    if (start < node.start) {
+      node.left = remove(node.left, start, value);
+    } else if (start > node.start) {
+      node.right = remove(node.right, start, value);
+    } else if (node.value == value) {
+      removed = true;
+      if (node.left == null) {
+        return node.right;
+      }
+      if (node.right == null) {
+        return node.left;
+      }
+      Node<T> successor = node.right;
+      while (successor.left != null) {
+        successor = successor.left;
+      }
+      successor.right = removeMin(node.right);
+      successor.left = node.left;
+      return rebalance(successor);
+    } else {
+      // Equal starts may sit on either side of a node, ordered by insertion.
+      node.left = remove(node.left, start, value);
+      if (!removed) {
+        node.right = remove(node.right, start, value);
+      }
+    }
+    return rebalance(node);
+  }
+
+  private Node<T> removeMin(Node<T> node) {
+    if (node.left == null) {
+      return node.right;
+    }
+    node.left = removeMin(node.left);
+    return rebalance(node);
+  }
+
+  private static int compare(Node<?> a, Node<?> b) {
+    int byStart = Long.compare(a.start, b.start);
+    return byStart != 0 ? byStart : Long.compare(a.seq, b.seq);
+  }
+
+  private static int height(Node<?> node) {
+    return node == null ? 0 : node.height;
+  }
+
+  private static void update(Node<?> node) {
+    node.height = 1 + Math.max(height(node.left), height(node.right));
+    long maxEnd = node.end;
+    if (node.left != null && node.left.maxEnd > maxEnd) {
+      maxEnd = node.left.maxEnd;
+    }
+    if (node.right != null && node.right.maxEnd > maxEnd) {
+      maxEnd = node.right.maxEnd;
+    }
+    node.maxEnd = maxEnd;
+  }
+
+  private Node<T> rebalance(Node<T> node) {
+    update(node);
+    int balance = height(node.left) - height(node.right);
+    if (balance > 1) {
+      if (height(node.left.left) < height(node.left.right)) {
+        node.left = rotateLeft(node.left);
+      }
+      return rotateRight(node);
+    }
+    if (balance < -1) {
+      if (height(node.right.right) < height(node.right.left)) {
+        node.right = rotateRight(node.right);
+      }
+      return rotateLeft(node);
+    }
+    return node;
+  }
+
+  private Node<T> rotateRight(Node<T> node) {
+    Node<T> pivot = node.left;
+    node.left = pivot.right;
+    pivot.right = node;
+    update(node);
+    update(pivot);
+    return pivot;
+  }
+
+  private Node<T> rotateLeft(Node<T> node) {
+    Node<T> pivot = node.right;
+    node.right = pivot.left;
+    pivot.left = node;
+    update(node);
+    update(pivot);
+    return pivot;
+  }
+
+  /** In-order walk over the nodes overlapping [from, to]. */
+  private final class RangeIterator implements Iterator<T> {
+    private final Deque<Node<T>> stack = new ArrayDeque<>();
+    private final long from;
+    private final long to;
+    private Node<T> next;
+
+    private RangeIterator(long from, long to) {
+      this.from = from;
+      this.to = to;
+      pushLeft(root);
+      advance();
+    }
+
+    /** Pushes the left spine of a subtree, skipping subtrees that end before the range. */
+    private void pushLeft(Node<T> node) {
+      while (node != null && node.maxEnd >= from) {
+        stack.push(node);
+        node = node.left;
+      }
+    }
+
+    private void advance() {
+      next = null;
+      while (!stack.isEmpty()) {
+        Node<T> node = stack.pop();
+        if (node.start > to) {
+          // Every later node starts later still.
+          stack.clear();
+          return;
+        }
+        pushLeft(node.right);
+        if (node.end >= from) {
+          next = node;
+          return;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public T next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      T value = next.value;
+      advance();
+      return value;
+    }
+  }
+}
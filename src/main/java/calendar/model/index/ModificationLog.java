@@ -0,0 +1,75 @@
+package calendar.model.index;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Modification sequence numbers of the events in a calendar, kept as a log of id ranges. Every
+ * change gets the next sequence number and records the ranges of ids it added or edited, so an
+ * event's sequence number is that of the latest range holding its id. Ids are handed out in
+ * consecutive runs, so a batch or a whole series costs one entry however many events it holds.
+ */
+public class ModificationLog {
+  private static final int INITIAL_CAPACITY = 64;
+
+  private long[] seqs = new long[INITIAL_CAPACITY];
+  private long[] firstIds = new long[INITIAL_CAPACITY];
+  private int[] counts = new int[INITIAL_CAPACITY];
+  private int size;
+  private long current;
+
+  /** Starts a change and returns its sequence number. */
+  public long next() {
+    return ++current;
+  }
+
+  /** Returns the sequence number of the latest change, 0 before the first one. */
+  public long current() {
+    return current;
+  }
+
+  /** Records that the current change touched count consecutive ids starting at firstId. */
+  public void touch(long firstId, int count) {
+    if (count <= 0) {
+      return;
+    }
+    int last = size - 1;
+    if (last >= 0 && seqs[last] == current && firstIds[last] + counts[last] == firstId
+        && (long) counts[last] + count <= Integer.MAX_VALUE) {
+      counts[last] += count;
+      return;
+    }
+    if (size == seqs.length) {
+      seqs = Arrays.copyOf(seqs, size * 2);
+      firstIds = Arrays.copyOf(firstIds, size * 2);
+      counts = Arrays.copyOf(counts, size * 2);
+    }
+    seqs[size] = current;
+    firstIds[size] = firstId;
+    counts[size] = count;
+    size++;
+  }
+
+  /**
+   * Visits the ids touched by changes after the given sequence number, in the order they were
+   * touched. An id touched more than once is visited more than once.
+   */
+  public void forEachSince(long seq, LongConsumer ids) {
+    // Entries are appended in sequence order, so the ones after seq form a suffix.
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (seqs[mid] <= seq) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    for (int i = low; i < size; i++) {
+      for (int k = 0; k < counts[i]; k++) {
+        ids.accept(firstIds[i] + k);
+      }
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package calendar.model.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Indexes values by name, and by name and start minute. Values sharing a name are kept in a map
+ * sorted by start so "from this start on" lookups can seek straight to the first match, while the
+ * composite (name, start) key resolves exact lookups in constant time. Both views share the same
+ * per-key lists, which keep insertion order.
+ */
+public class NameIndex<T> {
+  private final Map<String, NavigableMap<Long, List<T>>> byName = new HashMap<>();
+  private final Map<Key, List<T>> byNameAndStart = new HashMap<>();
+
+  /** Composite (name, start) key. */
+  private static final class Key {
+    private final String name;
+    private final long start;
+
+    private Key(String name, long start) {
+      this.name = name;
+      this.start = start;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return start == other.start && name.equals(other.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(name, start);
+    }
+  }
+
+  /** Adds a value under the given name and start minute. */
+  public void add(String name, long start, T value) {
+    List<T> values = byNameAndStart.get(new Key(name, start));
+    if (values == null) {
+      values = new ArrayList<>(1);
+      byNameAndStart.put(new Key(name, start), values);
+      byName.computeIfAbsent(name, n -> new TreeMap<>()).put(start, values);
+    }
+    values.add(value);
+  }
+
+  /** Removes the given value (compared by identity) from under the given name and start. */
+  public boolean remove(String name, long start, T value) {
+    Key key = new Key(name, start);
+    List<T> values = byNameAndStart.get(key);
+    if (values == null) {
+      return false;
+    }
+    for (int i = 0; i < values.size(); i++) {
+      if (values.get(i) == value) {
+        values.remove(i);
+        if (values.isEmpty()) {
+          byNameAndStart.remove(key);
+          NavigableMap<Long, List<T>> starts = byName.get(name);
+          starts.remove(start);
+          if (starts.isEmpty()) {
+            byName.remove(name);
+          }
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the values with the given name and start, in insertion order. */
+  public List<T> get(String name, long start) {
+    List<T> values = byNameAndStart.get(new Key(name, start));
+    return values == null ? Collections.emptyList() : values;
+  }
+
+  /** Returns all values with the given name, ordered by start. */
+  public List<T> get(String name) {
+    return from(name, Long.MIN_VALUE);
+  }
+
+  /** Returns the values with the given name starting at or after the given minute. */
+  public List<T> from(String name, long start) {
+    NavigableMap<Long, List<T>> starts = byName.get(name);
+    if (starts == null) {
+      return Collections.emptyList();
+    }
+    List<T> result = new ArrayList<>();
+    for (List<T> values : starts.tailMap(start, true).values()) {
+      result.addAll(values);
+    }
+    return result;
+  }
+}
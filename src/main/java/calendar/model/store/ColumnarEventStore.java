@@ -0,0 +1,601 @@
+package calendar.model.store;
+
+import calendar.model.event.EpochMinutes;
+import calendar.model.event.Event;
+import calendar.model.event.RecurringEvent;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Store that keeps events as primitive columns: start and end as epoch minutes and the text
+ * fields as dictionary ids. Rows never move. Events handed out are lightweight views built from a
+ * row on demand; recurring series are expanded into one row per occurrence.
+ *
+ * <p>Range scans walk row numbers in start order. Most rows sit in a main order, over which a
+ * max-end tree finds the next row that reaches a window in logarithmic time, however long the
+ * longest event is. Rows added one at a time go to a small sorted pending run first, which is
+ * merged into the main order together with the next batch, or once it grows past the square root
+ * of the row count, so single inserts do not shift the whole order. Rows are also listed per name
+ * id, so edits by name touch only the rows with that name.
+ */
+public class ColumnarEventStore implements EventStore {
+  private static final int INITIAL_CAPACITY = 16;
+  private static final long MINUTES_PER_DAY = 24L * 60L;
+  // Pending rows allowed before a merge, whatever the row count.
+  private static final int MIN_PENDING = 256;
+
+  private final StringDictionary strings;
+  private long[] eventIds = new long[INITIAL_CAPACITY];
+  private long[] starts = new long[INITIAL_CAPACITY];
+  private long[] ends = new long[INITIAL_CAPACITY];
+  private int[] names = new int[INITIAL_CAPACITY];
+  private int[] descriptions = new int[INITIAL_CAPACITY];
+  private int[] locations = new int[INITIAL_CAPACITY];
+  private final BitSet publicRows = new BitSet();
+  private final Map<Long, Integer> rowsById = new HashMap<>();
+  private final Map<Integer, RowList> rowsByName = new HashMap<>();
+  private int size;
+  // Main order: row numbers ordered by start, then by insertion.
+  private int[] byStart = new int[0];
+  private int sorted;
+  // Max-end tree over the main order: leaves at leafBase + position, each node the largest end
+  // below it, Long.MIN_VALUE past the last position.
+  private long[] maxEnds = new long[2];
+  private int leafBase = 1;
+  // Rows added since the last merge, ordered by start, then by insertion.
+  private int[] pending = new int[INITIAL_CAPACITY];
+  private int pendingCount;
+  // Longest pending event, so pending scans know how far before the window to begin.
+  private long pendingMaxDuration;
+
+  /** Constructs an empty store encoding strings with the given dictionary. */
+  public ColumnarEventStore(StringDictionary strings) {
+    this.strings = strings;
+  }
+
+  @Override
+  public StorageEngine engine() {
+    return StorageEngine.COLUMNAR;
+  }
+
+  @Override
+  public StringDictionary strings() {
+    return strings;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /** Adds the row to the pending run, merging the run into the main order once it is large. */
+  @Override
+  public void add(Event event) {
+    ensureCapacity(size + 1);
+    int row = writeRow(event);
+    if (pendingCount == pending.length) {
+      pending = Arrays.copyOf(pending, pendingCount * 2);
+    }
+    int position = upperBound(pending, pendingCount, starts[row]);
+    System.arraycopy(pending, position, pending, position + 1, pendingCount - position);
+    pending[position] = row;
+    pendingCount++;
+    pendingMaxDuration = Math.max(pendingMaxDuration, ends[row] - starts[row]);
+    if (pendingCount > Math.max(MIN_PENDING, (int) Math.sqrt(size))) {
+      merge(new int[0], 0);
+    }
+  }
+
+  /**
+   * Writes the batch as new rows, then merges their row numbers and the pending run into the
+   * main order in one pass instead of shifting the order once per event.
+   */
+  @Override
+  public void addAll(List<? extends Event> events) {
+    ensureCapacity(size + events.size());
+    int[] batch = new int[events.size()];
+    int count = 0;
+    for (Event event : events) {
+      batch[count++] = writeRow(event);
+    }
+    merge(batch, count);
+  }
+
+  @Override
+  public void addSeries(RecurringEvent series) {
+    addAll(series.getEventInstances());
+  }
+
+  /** Writes a new row without placing it in the start order; returns its row number. */
+  private int writeRow(Event event) {
+    int row = size++;
+    eventIds[row] = event.getId();
+    starts[row] = event.getStartMinute();
+    ends[row] = event.getEndMinute();
+    names[row] = strings.idOf(event.getName());
+    descriptions[row] = strings.idOf(event.getDescription());
+    locations[row] = strings.idOf(event.getLocation());
+    publicRows.set(row, event.isPublic());
+    if (event.getId() != 0) {
+      rowsById.put(event.getId(), row);
+    }
+    rowsByName.computeIfAbsent(names[row], id -> new RowList()).add(row);
+    return row;
+  }
+
+  private void ensureCapacity(int rows) {
+    if (rows <= starts.length) {
+      return;
+    }
+    int capacity = starts.length;
+    while (capacity < rows) {
+      capacity += capacity >> 1;
+    }
+    eventIds = Arrays.copyOf(eventIds, capacity);
+    starts = Arrays.copyOf(starts, capacity);
+    ends = Arrays.copyOf(ends, capacity);
+    names = Arrays.copyOf(names, capacity);
+    descriptions = Arrays.copyOf(descriptions, capacity);
+    locations = Arrays.copyOf(locations, capacity);
+  }
+
+  /**
+   * Merges the pending run and a batch ordered by start into the main order, keeping insertion
+   * order among equal starts, and rebuilds the max-end tree.
+   */
+  private void merge(int[] batch, int count) {
+    int[] merged = mergeRuns(byStart, sorted, pending, pendingCount);
+    byStart = mergeRuns(merged, sorted + pendingCount, batch, count);
+    sorted += pendingCount + count;
+    pendingCount = 0;
+    pendingMaxDuration = 0;
+    leafBase = Integer.highestOneBit(Math.max(1, sorted - 1)) << 1;
+    maxEnds = new long[2 * leafBase];
+    Arrays.fill(maxEnds, Long.MIN_VALUE);
+    for (int p = 0; p < sorted; p++) {
+      maxEnds[leafBase + p] = ends[byStart[p]];
+    }
+    for (int node = leafBase - 1; node > 0; node--) {
+      maxEnds[node] = Math.max(maxEnds[2 * node], maxEnds[2 * node + 1]);
+    }
+  }
+
+  /** Merges two runs of rows ordered by start, taking the first run's row on equal starts. */
+  private int[] mergeRuns(int[] first, int firstCount, int[] second, int secondCount) {
+    int[] merged = new int[firstCount + secondCount];
+    int i = 0;
+    int j = 0;
+    for (int p = 0; p < merged.length; p++) {
+      if (j == secondCount || (i < firstCount && starts[first[i]] <= starts[second[j]])) {
+        merged[p] = first[i++];
+      } else {
+        merged[p] = second[j++];
+      }
+    }
+    return merged;
+  }
+
+  /** Returns the first position among the first count rows of the run starting at or after. */
+  private int lowerBound(int[] run, int count, long minute) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (starts[run[mid]] < minute) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /** Returns the first position among the first count rows of the run starting after minute. */
+  private int upperBound(int[] run, int count, long minute) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (starts[run[mid]] <= minute) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the first position at or after p in the main order whose row ends at or after
+   * minEnd, or -1 if there is none, by climbing the max-end tree to the first subtree that
+   * reaches minEnd and descending it.
+   */
+  private int nextReaching(int p, long minEnd) {
+    if (p >= sorted) {
+      return -1;
+    }
+    int node = leafBase + p;
+    if (maxEnds[node] >= minEnd) {
+      return p;
+    }
+    while (true) {
+      if ((node & 1) == 0 && maxEnds[node + 1] >= minEnd) {
+        node++;
+        break;
+      }
+      node >>= 1;
+      if (node <= 1) {
+        return -1;
+      }
+    }
+    while (node < leafBase) {
+      node = maxEnds[2 * node] >= minEnd ? 2 * node : 2 * node + 1;
+    }
+    return node - leafBase;
+  }
+
+  @Override
+  public boolean overlaps(long from, long to) {
+    return new RowScan(Long.MIN_VALUE, to, from).hasNext();
+  }
+
+  @Override
+  public List<Event> eventsOn(LocalDate date) {
+    long dayStart = EpochMinutes.of(date.atStartOfDay());
+    return collect(new RowScan(dayStart, dayStart + MINUTES_PER_DAY - 1, Long.MIN_VALUE));
+  }
+
+  @Override
+  public List<Event> eventsBetween(LocalDateTime start, LocalDateTime end) {
+    return collect(new RowScan(Long.MIN_VALUE, EpochMinutes.of(end), EpochMinutes.of(start)));
+  }
+
+  private List<Event> collect(RowScan scan) {
+    List<Event> result = new ArrayList<>();
+    while (scan.hasNext()) {
+      result.add(new RowView(scan.nextRow()));
+    }
+    return result;
+  }
+
+  @Override
+  public Iterator<Event> iterateBetween(LocalDateTime start, LocalDateTime end) {
+    RowScan scan = new RowScan(Long.MIN_VALUE, EpochMinutes.of(end), EpochMinutes.of(start));
+    return new Iterator<Event>() {
+      @Override
+      public boolean hasNext() {
+        return scan.hasNext();
+      }
+
+      @Override
+      public Event next() {
+        return new RowView(scan.nextRow());
+      }
+    };
+  }
+
+  @Override
+  public boolean editSingle(String property, String name, LocalDateTime start, LocalDateTime end,
+      String newValue, EditListener edited) {
+    int nameId = strings.lookup(name);
+    if (nameId == StringDictionary.ABSENT) {
+      return false;
+    }
+    long startMinute = EpochMinutes.of(start);
+    long endMinute = EpochMinutes.of(end);
+    RowScan scan = new RowScan(startMinute, startMinute, Long.MIN_VALUE);
+    while (scan.hasNext()) {
+      int row = scan.nextRow();
+      if (names[row] == nameId && ends[row] == endMinute) {
+        updateProperty(row, property, newValue);
+        edited.edited(eventIds[row], 1);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public int editFrom(
+      String property, String name, LocalDateTime start, String newValue, EditListener edited) {
+    long from = EpochMinutes.of(start);
+    return editByName(property, name, newValue, edited, row -> starts[row] >= from);
+  }
+
+  @Override
+  public int editAll(String property, String name, String newValue, EditListener edited) {
+    return editByName(property, name, newValue, edited, row -> true);
+  }
+
+  /** Edits the rows listed under the name that pass the filter; returns how many. */
+  private int editByName(String property, String name, String newValue, EditListener edited,
+      IntPredicate filter) {
+    int nameId = strings.lookup(name);
+    RowList rows = nameId == StringDictionary.ABSENT ? null : rowsByName.get(nameId);
+    if (rows == null) {
+      return 0;
+    }
+    int[] matches = rows.toArray(filter);
+    if ("name".equalsIgnoreCase(property)) {
+      // Move the rows between name lists in one pass each rather than one row at a time.
+      int newId = strings.idOf(newValue);
+      if (newId != nameId) {
+        rows.removeAll(matches);
+        if (rows.isEmpty()) {
+          rowsByName.remove(nameId);
+        }
+        rowsByName.computeIfAbsent(newId, id -> new RowList()).addAll(matches);
+        for (int row : matches) {
+          names[row] = newId;
+        }
+      }
+    } else {
+      for (int row : matches) {
+        updateProperty(row, property, newValue);
+      }
+    }
+    for (int row : matches) {
+      edited.edited(eventIds[row], 1);
+    }
+    return matches.length;
+  }
+
+  /** Updates a row's property based on a string identifier. */
+  private void updateProperty(int row, String property, String newValue) {
+    switch (property.toLowerCase()) {
+      case "name":
+        int nameId = strings.idOf(newValue);
+        if (nameId != names[row]) {
+          RowList old = rowsByName.get(names[row]);
+          old.remove(row);
+          if (old.isEmpty()) {
+            rowsByName.remove(names[row]);
+          }
+          names[row] = nameId;
+          rowsByName.computeIfAbsent(nameId, id -> new RowList()).add(row);
+        }
+        break;
+      case "description":
+        descriptions[row] = strings.idOf(newValue);
+        break;
+      case "location":
+        locations[row] = strings.idOf(newValue);
+        break;
+      case "ispublic":
+        publicRows.set(row, Boolean.parseBoolean(newValue));
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public Event find(String name, LocalDateTime start) {
+    int nameId = strings.lookup(name);
+    if (nameId == StringDictionary.ABSENT) {
+      return null;
+    }
+    long startMinute = EpochMinutes.of(start);
+    RowScan scan = new RowScan(startMinute, startMinute, Long.MIN_VALUE);
+    while (scan.hasNext()) {
+      int row = scan.nextRow();
+      if (names[row] == nameId) {
+        return new RowView(row);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Event byId(long id) {
+    Integer row = rowsById.get(id);
+    return row == null ? null : new RowView(row);
+  }
+
+  @Override
+  public void forEachStored(Consumer<Event> singles, Consumer<RecurringEvent> series) {
+    RowScan scan = new RowScan(Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE);
+    while (scan.hasNext()) {
+      singles.accept(new RowView(scan.nextRow()));
+    }
+  }
+
+  /**
+   * Walks the rows starting in [minStart, maxStart] and ending at or after minEnd, in start
+   * order, merging the main order with the pending run. On equal starts main rows come first, as
+   * they were added earlier.
+   */
+  private final class RowScan {
+    private final long maxStart;
+    private final long minEnd;
+    private int main;
+    private int next;
+
+    private RowScan(long minStart, long maxStart, long minEnd) {
+      this.maxStart = maxStart;
+      this.minEnd = minEnd;
+      main = nextReaching(lowerBound(byStart, sorted, minStart), minEnd);
+      // A pending row reaching minEnd starts at most pendingMaxDuration before it.
+      long pendingFrom = minEnd - pendingMaxDuration > minEnd ? minStart
+          : Math.max(minStart, minEnd - pendingMaxDuration);
+      next = lowerBound(pending, pendingCount, pendingFrom);
+      skipPending();
+    }
+
+    private void skipPending() {
+      while (next < pendingCount && ends[pending[next]] < minEnd
+          && starts[pending[next]] <= maxStart) {
+        next++;
+      }
+    }
+
+    private boolean hasNext() {
+      return (main >= 0 && starts[byStart[main]] <= maxStart)
+          || (next < pendingCount && starts[pending[next]] <= maxStart);
+    }
+
+    private int nextRow() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      boolean fromMain = main >= 0 && starts[byStart[main]] <= maxStart
+          && (next == pendingCount || starts[byStart[main]] <= starts[pending[next]]);
+      if (fromMain) {
+        int row = byStart[main];
+        main = nextReaching(main + 1, minEnd);
+        return row;
+      }
+      int row = pending[next++];
+      skipPending();
+      return row;
+    }
+  }
+
+  /** Row numbers in ascending order, for the rows sharing one name. */
+  private static final class RowList {
+    private int[] rows = new int[4];
+    private int count;
+
+    private boolean isEmpty() {
+      return count == 0;
+    }
+
+    private void add(int row) {
+      if (count == rows.length) {
+        rows = Arrays.copyOf(rows, count * 2);
+      }
+      int position = count;
+      if (count > 0 && rows[count - 1] > row) {
+        position = -Arrays.binarySearch(rows, 0, count, row) - 1;
+        System.arraycopy(rows, position, rows, position + 1, count - position);
+      }
+      rows[position] = row;
+      count++;
+    }
+
+    private void remove(int row) {
+      int position = Arrays.binarySearch(rows, 0, count, row);
+      if (position >= 0) {
+        System.arraycopy(rows, position + 1, rows, position, count - position - 1);
+        count--;
+      }
+    }
+
+    private int[] toArray(IntPredicate filter) {
+      int[] matches = new int[count];
+      int n = 0;
+      for (int i = 0; i < count; i++) {
+        if (filter.test(rows[i])) {
+          matches[n++] = rows[i];
+        }
+      }
+      return Arrays.copyOf(matches, n);
+    }
+
+    /** Removes the given rows, which must be listed and ascending, in one pass. */
+    private void removeAll(int[] removed) {
+      int kept = 0;
+      int j = 0;
+      for (int i = 0; i < count; i++) {
+        if (j < removed.length && rows[i] == removed[j]) {
+          j++;
+        } else {
+          rows[kept++] = rows[i];
+        }
+      }
+      count = kept;
+    }
+
+    /** Adds ascending rows by merging them with the listed ones. */
+    private void addAll(int[] added) {
+      int[] merged = new int[Math.max(4, count + added.length)];
+      int i = 0;
+      int j = 0;
+      for (int p = 0; p < count + added.length; p++) {
+        merged[p] = j == added.length || (i < count && rows[i] < added[j]) ? rows[i++]
+            : added[j++];
+      }
+      rows = merged;
+      count += added.length;
+    }
+  }
+
+  /**
+   * Read-only event view over one row. The row's values are captured when the view is made, so
+   * views can be read after the calendar's lock is released.
+   */
+  private final class RowView implements Event {
+    private final long id;
+    private final long start;
+    private final long end;
+    private final String name;
+    private final String description;
+    private final String location;
+    private final boolean isPublic;
+
+    private RowView(int row) {
+      this.id = eventIds[row];
+      this.start = starts[row];
+      this.end = ends[row];
+      this.name = strings.valueOf(names[row]);
+      this.description = strings.valueOf(descriptions[row]);
+      this.location = strings.valueOf(locations[row]);
+      this.isPublic = publicRows.get(row);
+    }
+
+    @Override
+    public long getId() {
+      return id;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public LocalDateTime getStart() {
+      return EpochMinutes.toDateTime(start);
+    }
+
+    @Override
+    public LocalDateTime getEnd() {
+      return EpochMinutes.toDateTime(end);
+    }
+
+    @Override
+    public long getStartMinute() {
+      return start;
+    }
+
+    @Override
+    public long getEndMinute() {
+      return end;
+    }
+
+    @Override
+    public String getDescription() {
+      return description;
+    }
+
+    @Override
+    public String getLocation() {
+      return location;
+    }
+
+    @Override
+    public boolean isPublic() {
+      return isPublic;
+    }
+  }
+}
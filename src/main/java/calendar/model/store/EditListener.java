@@ -0,0 +1,8 @@
+package calendar.model.store;
+
+/** Told which events a store edit changed, as runs of consecutive ids. */
+@FunctionalInterface
+public interface EditListener {
+  /** Called for count consecutive edited ids starting at firstId. */
+  void edited(long firstId, int count);
+}
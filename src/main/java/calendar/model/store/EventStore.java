@@ -0,0 +1,77 @@
+package calendar.model.store;
+
+import calendar.model.event.Event;
+import calendar.model.event.RecurringEvent;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Storage engine behind a calendar. Stores hold events and answer time and name lookups;
+ * conflict policy is left to the calendar. Query results are ordered by start time.
+ */
+public interface EventStore {
+  /** Returns the engine this store implements. */
+  StorageEngine engine();
+
+  /**
+   * Returns the dictionary the store's event strings are canonicalized with. Stores of calendars
+   * managed together share one.
+   */
+  StringDictionary strings();
+
+  /** Returns the number of stored events, counting a recurring series once per occurrence. */
+  int size();
+
+  /** Stores a single event. */
+  void add(Event event);
+
+  /** Stores a batch of single events, which must be ordered by start. */
+  void addAll(List<? extends Event> events);
+
+  /** Stores every occurrence of a recurring series. */
+  void addSeries(RecurringEvent series);
+
+  /** Returns true if any stored event overlaps the closed epoch-minute interval [from, to]. */
+  boolean overlaps(long from, long to);
+
+  /** Returns the events starting on the given date. */
+  List<Event> eventsOn(LocalDate date);
+
+  /** Returns the events overlapping the given date-times. */
+  List<Event> eventsBetween(LocalDateTime start, LocalDateTime end);
+
+  /**
+   * Returns the events overlapping the given date-times lazily, in start order. The store must not
+   * change while the iterator is in use.
+   */
+  Iterator<Event> iterateBetween(LocalDateTime start, LocalDateTime end);
+
+  /**
+   * Edits the first event matching the name and start/end times; returns false if none. The ids
+   * of the edited events are reported to the listener, here and in the other edits.
+   */
+  boolean editSingle(String property, String name, LocalDateTime start, LocalDateTime end,
+      String newValue, EditListener edited);
+
+  /** Edits the events with the given name starting at or after the given time. */
+  int editFrom(
+      String property, String name, LocalDateTime start, String newValue, EditListener edited);
+
+  /** Edits all events with the given name. */
+  int editAll(String property, String name, String newValue, EditListener edited);
+
+  /** Returns the first event with the given name and start, or null if there is none. */
+  Event find(String name, LocalDateTime start);
+
+  /** Returns the event with the given id, or null if there is none. */
+  Event byId(long id);
+
+  /**
+   * Visits the events as the store keeps them: single events in start order, then recurring
+   * series as rules. Stores that expand series report their occurrences as single events.
+   */
+  void forEachStored(Consumer<Event> singles, Consumer<RecurringEvent> series);
+}
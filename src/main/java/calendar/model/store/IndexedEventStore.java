@@ -0,0 +1,436 @@
+package calendar.model.store;
+
+import calendar.model.event.AbstractCalendarEvent;
+import calendar.model.event.EpochMinutes;
+import calendar.model.event.Event;
+import calendar.model.event.RecurringEvent;
+import calendar.model.event.SingleEvent;
+import calendar.model.index.DayIndex;
+import calendar.model.index.IntervalTree;
+import calendar.model.index.NameIndex;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Default store: event objects in an interval tree, day buckets and name indexes. Recurring
+ * series are kept as rules, indexed by their overall span, and expanded on demand. Edits to a
+ * whole series change the rule once; an edited occurrence is detached from its series and stored
+ * as a single event, and an edit from a date splits the series there.
+ */
+public class IndexedEventStore implements EventStore {
+  private static final long MINUTES_PER_DAY = 24L * 60L;
+  private static final Comparator<Event> BY_START = Comparator.comparingLong(Event::getStartMinute);
+
+  private final IntervalTree<Event> timeIndex = new IntervalTree<>();
+  // Edits never move an event in time, so the day buckets only change on insert.
+  private final DayIndex<Event> dayIndex = new DayIndex<>();
+  private final NameIndex<Event> nameIndex = new NameIndex<>();
+  private final IntervalTree<RecurringEvent> seriesIndex = new IntervalTree<>();
+  private final NameIndex<RecurringEvent> seriesNames = new NameIndex<>();
+  private final Map<Long, Event> byId = new HashMap<>();
+  private final StringDictionary strings;
+  // Series keyed by their first id; each owns the ids up to first id + occurrences - 1.
+  private final NavigableMap<Long, RecurringEvent> seriesById = new TreeMap<>();
+  private int seriesOccurrences;
+
+  /** Constructs an empty store whose events' strings are canonicalized with the dictionary. */
+  public IndexedEventStore(StringDictionary strings) {
+    this.strings = strings;
+  }
+
+  @Override
+  public StringDictionary strings() {
+    return strings;
+  }
+
+  @Override
+  public StorageEngine engine() {
+    return StorageEngine.INDEXED;
+  }
+
+  @Override
+  public int size() {
+    return timeIndex.size() + seriesOccurrences;
+  }
+
+  @Override
+  public void add(Event event) {
+    long start = event.getStartMinute();
+    timeIndex.insert(start, event.getEndMinute(), event);
+    dayIndex.add(start, event);
+    nameIndex.add(event.getName(), start, event);
+    if (event.getId() != 0) {
+      byId.put(event.getId(), event);
+    }
+  }
+
+  @Override
+  public void addAll(List<? extends Event> events) {
+    for (Event event : events) {
+      add(event);
+    }
+  }
+
+  @Override
+  public void addSeries(RecurringEvent series) {
+    if (series.isEmpty()) {
+      return;
+    }
+    link(series);
+    seriesOccurrences += series.getInstanceCount();
+  }
+
+  /** Adds a series to the series indexes. */
+  private void link(RecurringEvent series) {
+    long firstStart = EpochMinutes.of(series.getFirstStart());
+    seriesIndex.insert(firstStart, EpochMinutes.of(series.getLastEnd()), series);
+    seriesNames.add(series.getName(), firstStart, series);
+    if (series.getId() != 0) {
+      seriesById.put(series.getId(), series);
+    }
+  }
+
+  /** Removes a series from the series indexes. */
+  private void unlink(RecurringEvent series) {
+    long firstStart = EpochMinutes.of(series.getFirstStart());
+    seriesIndex.remove(firstStart, series);
+    seriesNames.remove(series.getName(), firstStart, series);
+    if (series.getId() != 0) {
+      seriesById.remove(series.getId());
+    }
+  }
+
+  @Override
+  public boolean overlaps(long from, long to) {
+    return timeIndex.overlaps(from, to) || seriesOverlap(from, to);
+  }
+
+  /** Returns true if an occurrence of any stored series overlaps [from, to]. */
+  private boolean seriesOverlap(long from, long to) {
+    for (RecurringEvent series : seriesIndex.query(from, to)) {
+      if (series.overlaps(from, to)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Detaches the n-th occurrence of a series and stores it as a single event. The occurrence keeps
+   * its time and id, so overlap checks and id lookups are unchanged.
+   */
+  private SingleEvent detach(RecurringEvent series, int n) {
+    SingleEvent instance = series.getOccurrence(n);
+    series.addException(n);
+    seriesOccurrences--;
+    if (series.getInstanceCount() == 0) {
+      unlink(series);
+    }
+    add(instance);
+    return instance;
+  }
+
+  /**
+   * Splits a series before its n-th occurrence and returns the series holding the rest. The first
+   * part ends earlier, so it is reindexed with its new span.
+   */
+  private RecurringEvent split(RecurringEvent series, int n) {
+    unlink(series);
+    RecurringEvent rest = series.splitAt(n);
+    if (series.getInstanceCount() > 0) {
+      link(series);
+    }
+    if (rest.getInstanceCount() > 0) {
+      link(rest);
+    }
+    return rest;
+  }
+
+  @Override
+  public List<Event> eventsOn(LocalDate date) {
+    List<Event> result = dayIndex.get(date.toEpochDay());
+    long dayStart = EpochMinutes.of(date.atStartOfDay());
+    List<RecurringEvent> candidates = seriesIndex.query(dayStart, dayStart + MINUTES_PER_DAY - 1);
+    if (candidates.isEmpty()) {
+      return result;
+    }
+    result = new ArrayList<>(result);
+    for (RecurringEvent series : candidates) {
+      SingleEvent instance = series.occurrenceOn(date);
+      if (instance != null) {
+        result.add(instance);
+      }
+    }
+    result.sort(BY_START);
+    return result;
+  }
+
+  @Override
+  public List<Event> eventsBetween(LocalDateTime start, LocalDateTime end) {
+    long from = EpochMinutes.of(start);
+    long to = EpochMinutes.of(end);
+    List<Event> result = timeIndex.query(from, to);
+    List<RecurringEvent> candidates = seriesIndex.query(from, to);
+    if (candidates.isEmpty()) {
+      return result;
+    }
+    for (RecurringEvent series : candidates) {
+      result.addAll(series.occurrencesBetween(start, end));
+    }
+    result.sort(BY_START);
+    return result;
+  }
+
+  /**
+   * Merges the singles, which the interval tree yields in start order, with the occurrences of
+   * each overlapping series. Series are also visited in order of their first start, so a series
+   * only joins the merge once the merge reaches that start.
+   */
+  @Override
+  public Iterator<Event> iterateBetween(LocalDateTime start, LocalDateTime end) {
+    long from = EpochMinutes.of(start);
+    long to = EpochMinutes.of(end);
+    return new MergingIterator(
+        timeIndex.iterator(from, to), seriesIndex.iterator(from, to), start, end);
+  }
+
+  @Override
+  public boolean editSingle(String property, String name, LocalDateTime start, LocalDateTime end,
+      String newValue, EditListener edited) {
+    if (editFirstMatching(property, name, start, end, newValue, edited)) {
+      return true;
+    }
+    for (RecurringEvent series : seriesNames.get(name)) {
+      SingleEvent instance = series.occurrenceAt(start);
+      if (instance != null && instance.getEnd().equals(end)) {
+        SingleEvent detached = detach(series, series.occurrenceIndexAt(start));
+        updateProperty(detached, property, newValue);
+        edited.edited(detached.getId(), 1);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean editFirstMatching(String property, String name, LocalDateTime start,
+      LocalDateTime end, String newValue, EditListener edited) {
+    for (Event event : nameIndex.get(name, EpochMinutes.of(start))) {
+      if (event.getEnd().equals(end)) {
+        updateProperty((AbstractCalendarEvent) event, property, newValue);
+        edited.edited(event.getId(), 1);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public int editFrom(
+      String property, String name, LocalDateTime start, String newValue, EditListener edited) {
+    int count = 0;
+    for (RecurringEvent series : seriesNames.get(name)) {
+      int n = series.firstIndexFrom(start);
+      if (n == series.getOccurrenceCount()) {
+        continue;
+      }
+      RecurringEvent rest = n == 0 ? series : split(series, n);
+      if (rest.getInstanceCount() > 0) {
+        updateSeries(rest, property, newValue);
+        reportInstances(rest, edited);
+        count += rest.getInstanceCount();
+      }
+    }
+    List<Event> matches = nameIndex.from(name, EpochMinutes.of(start));
+    for (Event event : matches) {
+      updateProperty((AbstractCalendarEvent) event, property, newValue);
+      edited.edited(event.getId(), 1);
+    }
+    return count + matches.size();
+  }
+
+  @Override
+  public int editAll(String property, String name, String newValue, EditListener edited) {
+    int count = 0;
+    for (RecurringEvent series : seriesNames.get(name)) {
+      updateSeries(series, property, newValue);
+      reportInstances(series, edited);
+      count += series.getInstanceCount();
+    }
+    List<Event> matches = nameIndex.get(name);
+    for (Event event : matches) {
+      updateProperty((AbstractCalendarEvent) event, property, newValue);
+      edited.edited(event.getId(), 1);
+    }
+    return count + matches.size();
+  }
+
+  /** Reports the ids of a series' instances, skipping its detached occurrences. */
+  private static void reportInstances(RecurringEvent series, EditListener edited) {
+    int from = 0;
+    for (int n : series.getExceptions()) {
+      edited.edited(series.getId() + from, n - from);
+      from = n + 1;
+    }
+    edited.edited(series.getId() + from, series.getOccurrenceCount() - from);
+  }
+
+  /** Updates an event property based on a string identifier. */
+  private void updateProperty(AbstractCalendarEvent event, String property, String newValue) {
+    if ("name".equalsIgnoreCase(property)) {
+      long start = event.getStartMinute();
+      nameIndex.remove(event.getName(), start, event);
+      event.setName(newValue);
+      nameIndex.add(newValue, start, event);
+    } else {
+      updateText(event, property, newValue);
+    }
+  }
+
+  /** Updates a property of a whole series with one change to its rule. */
+  private void updateSeries(RecurringEvent series, String property, String newValue) {
+    if ("name".equalsIgnoreCase(property)) {
+      long firstStart = EpochMinutes.of(series.getFirstStart());
+      seriesNames.remove(series.getName(), firstStart, series);
+      series.setName(newValue);
+      seriesNames.add(newValue, firstStart, series);
+    } else {
+      updateText(series, property, newValue);
+    }
+  }
+
+  /** Updates a property that no index depends on. */
+  private static void updateText(AbstractCalendarEvent event, String property, String newValue) {
+    switch (property.toLowerCase()) {
+      case "description":
+        event.setDescription(newValue);
+        break;
+      case "location":
+        event.setLocation(newValue);
+        break;
+      case "ispublic":
+        event.setIsPublic(Boolean.parseBoolean(newValue));
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public Event find(String name, LocalDateTime start) {
+    List<Event> matches = nameIndex.get(name, EpochMinutes.of(start));
+    if (!matches.isEmpty()) {
+      return matches.get(0);
+    }
+    for (RecurringEvent series : seriesNames.get(name)) {
+      SingleEvent instance = series.occurrenceAt(start);
+      if (instance != null) {
+        return instance;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Event byId(long id) {
+    Event event = byId.get(id);
+    if (event != null) {
+      return event;
+    }
+    // Detached occurrences were found above; their series yields null for them.
+    Map.Entry<Long, RecurringEvent> series = seriesById.floorEntry(id);
+    if (series == null || id - series.getKey() >= series.getValue().getOccurrenceCount()) {
+      return null;
+    }
+    return series.getValue().getOccurrence((int) (id - series.getKey()));
+  }
+
+  @Override
+  public void forEachStored(Consumer<Event> singles, Consumer<RecurringEvent> series) {
+    timeIndex.iterator(Long.MIN_VALUE, Long.MAX_VALUE).forEachRemaining(singles);
+    seriesIndex.iterator(Long.MIN_VALUE, Long.MAX_VALUE).forEachRemaining(series);
+  }
+
+  /** Lazy k-way merge of the singles and the occurrences of series, ordered by start. */
+  private static final class MergingIterator implements Iterator<Event> {
+    private final PriorityQueue<Head> heads = new PriorityQueue<>();
+    private final Iterator<RecurringEvent> series;
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+    private RecurringEvent nextSeries;
+    private long order;
+
+    private MergingIterator(Iterator<Event> singles, Iterator<RecurringEvent> series,
+        LocalDateTime start, LocalDateTime end) {
+      this.series = series;
+      this.start = start;
+      this.end = end;
+      offer(singles);
+      nextSeries = series.hasNext() ? series.next() : null;
+    }
+
+    private void offer(Iterator<? extends Event> source) {
+      if (source.hasNext()) {
+        heads.add(new Head(source.next(), source, order++));
+      }
+    }
+
+    /** Adds the series that may have an occurrence before the current head. */
+    private void admitSeries() {
+      while (nextSeries != null && (heads.isEmpty()
+          || EpochMinutes.of(nextSeries.getFirstStart()) <= heads.peek().start)) {
+        offer(nextSeries.occurrenceIterator(start, end));
+        nextSeries = series.hasNext() ? series.next() : null;
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      admitSeries();
+      return !heads.isEmpty();
+    }
+
+    @Override
+    public Event next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Head head = heads.poll();
+      if (head.rest.hasNext()) {
+        heads.add(new Head(head.rest.next(), head.rest, head.order));
+      }
+      return head.event;
+    }
+  }
+
+  /** The next event of one merged source. Ties on start keep the sources in order. */
+  private static final class Head implements Comparable<Head> {
+    private final Event event;
+    private final Iterator<? extends Event> rest;
+    private final long start;
+    private final long order;
+
+    private Head(Event event, Iterator<? extends Event> rest, long order) {
+      this.event = event;
+      this.rest = rest;
+      this.start = event.getStartMinute();
+      this.order = order;
+    }
+
+    @Override
+    public int compareTo(Head other) {
+      int byStart = Long.compare(start, other.start);
+      return byStart != 0 ? byStart : Long.compare(order, other.order);
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package calendar.model.store;
+
+/** The storage engines a calendar can be backed by. */
+public enum StorageEngine {
+  /** Event objects held in interval, day and name indexes; recurring series kept as rules. */
+  INDEXED,
+  /** Primitive columns of epoch minutes and dictionary-encoded strings. */
+  COLUMNAR;
+
+  /** Creates an empty store for this engine that canonicalizes strings with the dictionary. */
+  public EventStore create(StringDictionary strings) {
+    return this == COLUMNAR ? new ColumnarEventStore(strings) : new IndexedEventStore(strings);
+  }
+
+  /** Returns the engine with the given case-insensitive name. */
+  public static StorageEngine parse(String name) {
+    for (StorageEngine engine : values()) {
+      if (engine.name().equalsIgnoreCase(name)) {
+        return engine;
+      }
+    }
+    throw new IllegalArgumentException("Unknown storage engine: " + name);
+  }
+}
@@ -0,0 +1,111 @@
+package calendar.model.store;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Assigns dense int ids to strings so columns can store ids instead of references, and hands out
+ * one canonical instance per distinct string so equal event fields share storage. Lookups of
+ * known strings and ids are lock-free; only adding a new string takes the dictionary's monitor.
+ */
+public class StringDictionary {
+  /** The id used for null. */
+  public static final int NULL_ID = -1;
+  /** Returned by lookup for strings that have no id. */
+  public static final int ABSENT = -2;
+
+  private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+  // Only grows; an id is published in ids after its slot here is written.
+  private volatile String[] values = new String[16];
+  private volatile int size;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /** Returns the canonical instance equal to the given string, adding it if it is new. */
+  public String intern(String value) {
+    if (value == null) {
+      return null;
+    }
+    Integer id = ids.get(value);
+    if (id != null) {
+      hits.increment();
+      return values[id];
+    }
+    synchronized (this) {
+      id = ids.get(value);
+      if (id != null) {
+        hits.increment();
+        return values[id];
+      }
+      misses.increment();
+      add(value);
+      return value;
+    }
+  }
+
+  /** Returns the id of the string, assigning the next free id if it is new. */
+  public int idOf(String value) {
+    if (value == null) {
+      return NULL_ID;
+    }
+    Integer id = ids.get(value);
+    if (id != null) {
+      return id;
+    }
+    synchronized (this) {
+      id = ids.get(value);
+      return id != null ? id : add(value);
+    }
+  }
+
+  private int add(String value) {
+    int id = size;
+    if (id == values.length) {
+      values = Arrays.copyOf(values, id + (id >> 1));
+    }
+    values[id] = value;
+    size = id + 1;
+    ids.put(value, id);
+    return id;
+  }
+
+  /** Returns the id of the string, or ABSENT if it has never been assigned one. */
+  public int lookup(String value) {
+    if (value == null) {
+      return NULL_ID;
+    }
+    Integer id = ids.get(value);
+    return id == null ? ABSENT : id;
+  }
+
+  /** Returns the string with the given id. */
+  public String valueOf(int id) {
+    return id == NULL_ID ? null : values[id];
+  }
+
+  /** Returns the number of distinct strings. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns how many intern calls found an existing canonical instance. */
+  public long hits() {
+    return hits.sum();
+  }
+
+  /** Returns how many intern calls added a new string. */
+  public long misses() {
+    return misses.sum();
+  }
+
+  /** Returns a one-line summary of the dictionary's size and hit rate. */
+  public String stats() {
+    long hitCount = hits();
+    long lookups = hitCount + misses();
+    long rate = lookups == 0 ? 0 : Math.round(100.0 * hitCount / lookups);
+    return size() + " distinct strings, " + hitCount + " of " + lookups
+        + " interned lookups hit (" + rate + "%)";
+  }
+}
@@ -3,14 +3,22 @@ package calendar.view.mode;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.Scanner;
 
 import calendar.controller.CalendarController;
+import calendar.controller.CommandJournal;
 import calendar.controller.command.Command;
 import calendar.controller.command.CommandFactory;
+import calendar.controller.command.StreamingCommand;
 
-/** Implementation of the Headless mode. */
+/**
+ * Implementation of the Headless mode. Output is printed as each command runs, unless the
+ * controller journals its commands; then it is acknowledged in batches: the commands of a batch are recorded without waiting, and one journal
+ * sync makes them all durable before their output is printed.
+ */
 public class HeadlessMode implements Mode {
+  // Commands acknowledged per journal sync.
+  private static final int BATCH_SIZE = 256;
+
   private final String filePath;
 
   private final CalendarController controller;
@@ -24,34 +32,76 @@ public class HeadlessMode implements Mode {
   /** Method for executing the program in headless mode. */
   @Override
   public void execute() {
-    Scanner scanner = new Scanner(System.in);
+    CommandJournal journal = controller.getJournal();
+    if (journal != null) {
+      journal.setDeferSync(true);
+    }
+    StringBuilder pending = new StringBuilder();
     try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
       String line;
       int lineNo = 1;
+      int batched = 0;
       while ((line = reader.readLine()) != null) {
         if (line.trim().isEmpty()) {
           lineNo++;
           continue;
         }
-        System.out.println("Processing command (" + lineNo + "): " + line);
+        print(journal, pending, "Processing command (" + lineNo + "): " + line);
         if (line.equalsIgnoreCase("exit")) {
-          System.out.println("Exiting Calendar App.");
+          print(journal, pending, "Exiting Calendar App.");
           break;
         }
         try {
           Command command = CommandFactory.process(line, controller);
-          String output = command.execute();
-          System.out.println(output);
+          if (command instanceof StreamingCommand) {
+            acknowledge(journal, pending);
+            batched = 0;
+            ((StreamingCommand) command).execute(System.out);
+            System.out.println();
+          } else {
+            print(journal, pending, command.execute());
+          }
         }
         catch (Exception e) {
-          System.out.println("Error at line " + lineNo + ": " + e.getMessage());
+          print(journal, pending, "Error at line " + lineNo + ": " + e.getMessage());
           break;
         }
+        if (++batched == BATCH_SIZE) {
+          acknowledge(journal, pending);
+          batched = 0;
+        }
         lineNo++;
       }
+      acknowledge(journal, pending);
     } catch (IOException e) {
       System.out.println("Headless mode terminated due to error: " + e.getMessage());
+    } finally {
+      if (journal != null) {
+        journal.setDeferSync(false);
+      }
+    }
+  }
+
+  /**
+   * Prints a line of output right away without a journal; with one, holds it until the journal
+   * records of its batch are durable.
+   */
+  private static void print(CommandJournal journal, StringBuilder pending, String line) {
+    if (journal == null) {
+      System.out.println(line);
+    } else {
+      pending.append(line).append(System.lineSeparator());
+    }
+  }
+
+  /** Makes the batch's journal records durable, then prints its output. */
+  private static void acknowledge(CommandJournal journal, StringBuilder pending)
+      throws IOException {
+    if (journal != null) {
+      journal.syncAll();
     }
+    System.out.print(pending);
+    pending.setLength(0);
   }
 
 }
@@ -5,6 +5,7 @@ import java.util.Scanner;
 import calendar.controller.CalendarController;
 import calendar.controller.command.Command;
 import calendar.controller.command.CommandFactory;
+import calendar.controller.command.StreamingCommand;
 
 /** Implementation of the Interactive mode. */
 public class InteractiveMode implements Mode {
@@ -31,8 +32,13 @@ public class InteractiveMode implements Mode {
       }
       try {
         Command command = CommandFactory.process(input, controller);
-        String output = command.execute();
-        System.out.println(output);
+        if (command instanceof StreamingCommand) {
+          ((StreamingCommand) command).execute(System.out);
+          System.out.println();
+        } else {
+          String output = command.execute();
+          System.out.println(output);
+        }
       }
       catch (Exception e) {
         System.out.println("Error: " + e.getMessage());
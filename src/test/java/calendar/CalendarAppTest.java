@@ -4,15 +4,26 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import calendar.controller.CalendarController;
+import calendar.controller.CalendarManager;
+import calendar.controller.CalendarSnapshot;
+import calendar.controller.CommandJournal;
 import calendar.controller.command.Command;
+import calendar.controller.command.StreamingCommand;
 import calendar.view.exceptions.InvalidCommandException;
 import calendar.view.exceptions.InvalidTokenException;
 import calendar.view.exceptions.MissingParameterException;
 import calendar.model.Calendar;
+import calendar.model.FreeBusy;
+import calendar.model.TimeSlot;
+import calendar.model.event.Event;
+import calendar.model.event.RecurringEvent;
 import calendar.model.event.SingleEvent;
+import calendar.model.store.StorageEngine;
+import calendar.model.store.StringDictionary;
 import calendar.controller.command.CommandFactory;
 import calendar.view.mode.HeadlessMode;
 import calendar.view.mode.InteractiveMode;
@@ -23,12 +34,33 @@ import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -36,12 +68,13 @@ import org.junit.Test;
 public class CalendarAppTest {
 
   private CalendarController controller;
+  private Calendar defaultCal;
   private SingleEvent event;
 
   /** Sets up test fixtures. */
   @Before
   public void setup() {
-    Calendar defaultCal = new Calendar("Default", ZoneId.of("America/New_York"));
+    defaultCal = new Calendar("Default", ZoneId.of("America/New_York"));
     controller = new CalendarController(defaultCal);
     event =
         new SingleEvent(
@@ -721,6 +754,1012 @@ public class CalendarAppTest {
     assertTrue(mode instanceof HeadlessMode);
   }
 
+  /** Tests that events between two date-times come back in start order. */
+  @Test
+  public void testEventsBetweenOrderedByStart() throws Exception {
+    Calendar cal = new Calendar("Ordered", ZoneId.of("America/New_York"));
+    cal.addEvent(new SingleEvent("Late", LocalDateTime.of(2025, 6, 3, 15, 0),
+        LocalDateTime.of(2025, 6, 3, 16, 0), "", "", true), false);
+    cal.addEvent(new SingleEvent("Early", LocalDateTime.of(2025, 6, 1, 9, 0),
+        LocalDateTime.of(2025, 6, 4, 9, 0), "", "", true), false);
+    cal.addEvent(new SingleEvent("Middle", LocalDateTime.of(2025, 6, 2, 10, 0),
+        LocalDateTime.of(2025, 6, 2, 11, 0), "", "", true), false);
+    List<Event> events = cal.getEventsBetween(
+        LocalDateTime.of(2025, 6, 2, 0, 0), LocalDateTime.of(2025, 6, 3, 23, 59));
+    assertEquals(3, events.size());
+    assertEquals("Early", events.get(0).getName());
+    assertEquals("Middle", events.get(1).getName());
+    assertEquals("Late", events.get(2).getName());
+    assertTrue(cal.isBusy(LocalDateTime.of(2025, 6, 3, 16, 0)));
+    assertTrue(cal.isBusy(LocalDateTime.of(2025, 6, 4, 9, 0)));
+    assertFalse(cal.isBusy(LocalDateTime.of(2025, 6, 4, 9, 1)));
+  }
+
+  /** Tests that events on a date only include events starting that day, in start order. */
+  @Test
+  public void testEventsOnUsesStartDay() throws Exception {
+    Calendar cal = new Calendar("Days", ZoneId.of("America/New_York"));
+    cal.addEvent(new SingleEvent("Overnight", LocalDateTime.of(2025, 6, 1, 22, 0),
+        LocalDateTime.of(2025, 6, 2, 2, 0), "", "", true), false);
+    cal.addEvent(new SingleEvent("Lunch", LocalDateTime.of(2025, 6, 2, 12, 0),
+        LocalDateTime.of(2025, 6, 2, 13, 0), "", "", true), false);
+    cal.addEvent(new SingleEvent("Standup", LocalDateTime.of(2025, 6, 2, 9, 0),
+        LocalDateTime.of(2025, 6, 2, 9, 15), "", "", true), false);
+    List<Event> events = cal.getEventsOn(LocalDate.of(2025, 6, 2));
+    assertEquals(2, events.size());
+    assertEquals("Standup", events.get(0).getName());
+    assertEquals("Lunch", events.get(1).getName());
+    assertTrue(cal.getEventsOn(LocalDate.of(2025, 6, 3)).isEmpty());
+  }
+
+  /** Tests that renamed events are found under their new name only. */
+  @Test
+  public void testRenameKeepsNameLookupsConsistent() throws Exception {
+    controller.createSingleEvent(
+        "Sync", "2025-06-10T09:00", "2025-06-10T09:30", "", "", true, false);
+    controller.createSingleEvent(
+        "Sync", "2025-06-11T09:00", "2025-06-11T09:30", "", "", true, false);
+    controller.createSingleEvent(
+        "Sync", "2025-06-12T09:00", "2025-06-12T09:30", "", "", true, false);
+    controller.editEventsFrom("name", "Sync", "2025-06-11T09:00", "Review");
+    assertTrue(controller.getFormattedEventsOn("2025-06-10").contains("Sync"));
+    assertTrue(controller.getFormattedEventsOn("2025-06-12").contains("Review"));
+    controller.editSingleEvent(
+        "location", "Review", "2025-06-11T09:00", "2025-06-11T09:30", "RoomB");
+    assertTrue(controller.getFormattedEventsOn("2025-06-11").contains("Review"));
+    assertTrue(controller.getFormattedEventsOn("2025-06-11").contains("RoomB"));
+    controller.editEvents("name", "Sync", "Renamed");
+    assertTrue(controller.getFormattedEventsOn("2025-06-10").contains("Renamed"));
+  }
 
+  /** Tests that an edit under a stale name finds nothing after a rename. */
+  @Test(expected = Exception.class)
+  public void testEditAfterRenameUsesNewName() throws Exception {
+    controller.createSingleEvent(
+        "Retro", "2025-06-13T09:00", "2025-06-13T10:00", "", "", true, false);
+    controller.editEvents("name", "Retro", "Postmortem");
+    controller.editEvents("location", "Retro", "Anywhere");
+  }
 
+  /** Tests that a conflicting recurring series is rejected as a whole. */
+  @Test
+  public void testRecurringConflictRejectsWholeSeries() throws Exception {
+    controller.createSingleEvent(
+        "Blocker", "2025-06-18T10:00", "2025-06-18T11:00", "", "", true, false);
+    boolean declined = false;
+    try {
+      controller.createRecurringEventOccurrences(
+          "Daily", "2025-06-16T10:30", "2025-06-16T11:30", "", "", true, "MTWRF", 5, true);
+    } catch (Exception e) {
+      declined = "Event conflict detected.".equals(e.getMessage());
+    }
+    assertTrue(declined);
+    assertEquals("No events on 2025-06-16", controller.getFormattedEventsOn("2025-06-16"));
+    assertEquals("No events on 2025-06-17", controller.getFormattedEventsOn("2025-06-17"));
+  }
+
+  /** Tests that recurring series answer range, day and busy queries without materializing. */
+  @Test
+  public void testRecurringSeriesQueries() throws Exception {
+    Calendar cal = new Calendar("Series", ZoneId.of("America/New_York"));
+    Set<DayOfWeek> days = EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY);
+    cal.addSeries(new RecurringEvent("Gym", LocalDateTime.of(2025, 1, 6, 7, 0),
+        LocalDateTime.of(2025, 1, 6, 8, 0), "", "", true, days,
+        LocalDateTime.of(2030, 12, 31, 0, 0)), false);
+    cal.addEvent(new SingleEvent("Dentist", LocalDateTime.of(2027, 3, 3, 6, 30),
+        LocalDateTime.of(2027, 3, 3, 7, 30), "", "", true), false);
+    List<Event> events = cal.getEventsBetween(
+        LocalDateTime.of(2027, 3, 1, 0, 0), LocalDateTime.of(2027, 3, 3, 23, 59));
+    assertEquals(3, events.size());
+    assertEquals(LocalDateTime.of(2027, 3, 1, 7, 0), events.get(0).getStart());
+    assertEquals("Dentist", events.get(1).getName());
+    assertEquals("Gym", events.get(2).getName());
+    assertEquals(2, cal.getEventsOn(LocalDate.of(2027, 3, 3)).size());
+    assertTrue(cal.isBusy(LocalDateTime.of(2029, 5, 2, 7, 30)));
+    assertFalse(cal.isBusy(LocalDateTime.of(2029, 5, 3, 7, 30)));
+    assertFalse(cal.isBusy(LocalDateTime.of(2031, 1, 1, 7, 30)));
+  }
+
+  /** Tests editing one instance of a recurring series leaves the others untouched. */
+  @Test
+  public void testEditSingleInstanceOfSeries() throws Exception {
+    controller.createRecurringEventOccurrences(
+        "Class", "2025-06-02T09:00", "2025-06-02T10:00", "", "Room1", true, "MW", 4, false);
+    controller.editSingleEvent(
+        "location", "Class", "2025-06-04T09:00", "2025-06-04T10:00", "Room2");
+    assertTrue(controller.getFormattedEventsOn("2025-06-04").contains("Room2"));
+    assertTrue(controller.getFormattedEventsOn("2025-06-09").contains("Room1"));
+    controller.editEventsFrom("location", "Class", "2025-06-09T09:00", "Room3");
+    assertTrue(controller.getFormattedEventsOn("2025-06-02").contains("Room1"));
+    assertTrue(controller.getFormattedEventsOn("2025-06-11").contains("Room3"));
+  }
+
+  /** Tests occurrence counts and indexing of recurring series in closed form. */
+  @Test
+  public void testRecurringOccurrenceArithmetic() {
+    RecurringEvent sundays = new RecurringEvent("Brunch", LocalDateTime.of(2025, 1, 1, 11, 0),
+        LocalDateTime.of(2025, 1, 1, 12, 0), "", "", true, EnumSet.of(DayOfWeek.SUNDAY),
+        LocalDateTime.of(2034, 12, 31, 0, 0));
+    assertEquals(522, sundays.getOccurrenceCount());
+    assertEquals(LocalDateTime.of(2025, 1, 5, 11, 0), sundays.getFirstStart());
+    assertEquals(LocalDateTime.of(2034, 12, 31, 11, 0), sundays.getOccurrence(521).getStart());
+    assertEquals(LocalDateTime.of(2025, 1, 12, 11, 0), sundays.getOccurrence(1).getStart());
+    RecurringEvent weekdays = new RecurringEvent("Standup", LocalDateTime.of(2025, 4, 5, 9, 0),
+        LocalDateTime.of(2025, 4, 5, 9, 15), "", "", true,
+        EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY, DayOfWeek.FRIDAY), 7);
+    assertEquals(7, weekdays.getEventInstances().size());
+    assertEquals(LocalDateTime.of(2025, 4, 7, 9, 0), weekdays.getOccurrence(0).getStart());
+    assertEquals(LocalDateTime.of(2025, 4, 21, 9, 0), weekdays.getOccurrence(6).getStart());
+    assertEquals(2, weekdays.occurrencesBetween(
+        LocalDateTime.of(2025, 4, 9, 9, 15), LocalDateTime.of(2025, 4, 11, 9, 0)).size());
+  }
+
+  /** Tests that the columnar store answers the same queries and edits as the default store. */
+  @Test
+  public void testColumnarStoreMatchesIndexedStore() throws Exception {
+    Calendar cal = new Calendar("Columns", ZoneId.of("UTC"), StorageEngine.COLUMNAR.create(new StringDictionary()));
+    cal.addEvent(new SingleEvent("Review", LocalDateTime.of(2025, 7, 2, 14, 0),
+        LocalDateTime.of(2025, 7, 2, 15, 0), "Q3", "Room1", true), false);
+    cal.addSeries(new RecurringEvent("Standup", LocalDateTime.of(2025, 7, 1, 9, 0),
+        LocalDateTime.of(2025, 7, 1, 9, 15), "", "Room2", true,
+        EnumSet.of(DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY), 4), true);
+    cal.addEvent(new SingleEvent("Offsite", LocalDateTime.of(2025, 6, 30, 8, 0),
+        LocalDateTime.of(2025, 7, 3, 18, 0), "", "", false), false);
+    assertEquals(6, cal.size());
+    List<Event> between = cal.getEventsBetween(
+        LocalDateTime.of(2025, 7, 2, 0, 0), LocalDateTime.of(2025, 7, 2, 23, 59));
+    assertEquals(3, between.size());
+    assertEquals("Offsite", between.get(0).getName());
+    assertEquals("Standup", between.get(1).getName());
+    assertEquals("Review", between.get(2).getName());
+    assertEquals(2, cal.getEventsOn(LocalDate.of(2025, 7, 2)).size());
+    assertTrue(cal.isBusy(LocalDateTime.of(2025, 7, 3, 17, 0)));
+    assertFalse(cal.isBusy(LocalDateTime.of(2025, 7, 3, 18, 1)));
+    assertEquals(2, cal.editEventsFrom("location", "Standup",
+        LocalDateTime.of(2025, 7, 8, 9, 0), "Room3"));
+    assertEquals("Room3", cal.findEventByNameAndStart("Standup",
+        LocalDateTime.of(2025, 7, 9, 9, 0)).getLocation());
+    assertTrue(cal.editSingleEvent("name", "Review", LocalDateTime.of(2025, 7, 2, 14, 0),
+        LocalDateTime.of(2025, 7, 2, 15, 0), "Retro"));
+    assertNull(cal.findEventByNameAndStart("Review", LocalDateTime.of(2025, 7, 2, 14, 0)));
+    assertEquals("Q3", cal.findEventByNameAndStart("Retro",
+        LocalDateTime.of(2025, 7, 2, 14, 0)).getDescription());
+  }
+
+  /** Tests creating a calendar backed by the columnar storage engine. */
+  @Test
+  public void testCreateColumnarCalendarCommand() throws Exception {
+    String cmd = "create calendar --name Archive --timezone UTC --storage columnar";
+    String result = CommandFactory.process(cmd, controller).execute();
+    assertTrue(result.contains("using columnar storage"));
+  }
+
+  /** Tests that event strings are shared through the manager's dictionary across calendars. */
+  @Test
+  public void testEventStringsAreInternedAcrossCalendars() throws Exception {
+    controller.createCalendar("Team", "UTC");
+    controller.createRecurringEventOccurrences("Planning", "2025-08-04T10:00",
+        "2025-08-04T11:00", "Sprint planning", "Room7", true, "M", 3, false);
+    controller.copyEventsBetween("2025-08-04", "2025-08-18", "Team", "2025-09-01");
+    controller.useCalendar("Team");
+    controller.createSingleEvent(new String("Planning"), "2025-09-20T10:00", "2025-09-20T11:00",
+        new String("Sprint planning"), new String("Room7"), true, false);
+    StringDictionary strings = controller.getStringDictionary();
+    assertEquals(3, strings.size());
+    assertTrue(strings.hits() >= 6);
+    assertTrue(strings.stats().startsWith("3 distinct strings"));
+  }
+
+  /** Tests that the id reported on create addresses the event in show commands. */
+  @Test
+  public void testShowEventById() throws Exception {
+    String created = CommandFactory.process("create event Review from 2025-06-18T10:00 "
+        + "to 2025-06-18T11:00", controller).execute();
+    String id = created.substring(created.lastIndexOf(' ') + 1).replaceAll("\\D", "");
+    assertEquals("Event " + id + ": Review (2025-06-18T10:00 to 2025-06-18T11:00) at ",
+        CommandFactory.process("show event " + id, controller).execute());
+  }
+
+  /** Tests that a copy reports a missing source event before a missing target calendar. */
+  @Test
+  public void testCopyReportsMissingEventBeforeMissingTarget() throws Exception {
+    String message = null;
+    try {
+      controller.copyEvent("Ghost", "2025-06-18T10:00", "Nowhere", "2025-06-19T10:00");
+    } catch (Exception e) {
+      message = e.getMessage();
+    }
+    assertEquals("Event Ghost not found at 2025-06-18T10:00", message);
+  }
+
+  /** Tests that queries from several threads run safely while another thread adds events. */
+  @Test
+  public void testConcurrentReadersAndWriter() throws Exception {
+    Calendar cal = new Calendar("Shared", ZoneId.of("UTC"));
+    LocalDateTime base = LocalDateTime.of(2025, 1, 1, 8, 0);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    List<Future<?>> readers = new ArrayList<>();
+    for (int r = 0; r < 3; r++) {
+      readers.add(pool.submit(() -> {
+        for (int i = 0; i < 2000; i++) {
+          cal.isBusy(base.plusDays(i % 200).plusMinutes(30));
+          cal.getEventsBetween(base.plusDays(i % 200), base.plusDays(i % 200 + 7));
+        }
+        return null;
+      }));
+    }
+    Future<?> writer = pool.submit(() -> {
+      for (int i = 0; i < 200; i++) {
+        cal.addEvent(new SingleEvent("Slot", base.plusDays(i), base.plusDays(i).plusHours(1),
+            "", "", true), true);
+      }
+      return null;
+    });
+    writer.get();
+    for (Future<?> reader : readers) {
+      reader.get();
+    }
+    pool.shutdown();
+    assertEquals(200, cal.size());
+    assertTrue(cal.isBusy(base.plusDays(199).plusMinutes(30)));
+  }
+
+  /** Tests that renaming a calendar to a name already in use is rejected. */
+  @Test
+  public void testRenameToExistingCalendarNameFails() throws Exception {
+    CalendarManager manager = new CalendarManager();
+    manager.createCalendar("Work", "UTC");
+    manager.createCalendar("Home", "UTC");
+    try {
+      manager.editCalendar("Work", "name", "Home");
+      assertTrue("rename to an existing name should fail", false);
+    } catch (IllegalArgumentException e) {
+      assertNotNull(manager.getCalendar("Work"));
+      assertEquals("Home", manager.getCalendar("Home").getName());
+    }
+  }
+
+  /** Tests that a batch insert is swept against itself and existing events and rejected whole. */
+  @Test
+  public void testAddEventsRejectsConflictingBatch() throws Exception {
+    for (StorageEngine engine : StorageEngine.values()) {
+      Calendar cal = new Calendar("Batch", ZoneId.of("UTC"), engine.create(new StringDictionary()));
+      LocalDateTime base = LocalDateTime.of(2025, 3, 3, 9, 0);
+      cal.addEvent(new SingleEvent("Existing", base, base.plusHours(1), "", "", true), true);
+      List<Event> batch = new ArrayList<>();
+      for (int i = 5; i >= 1; i--) {
+        batch.add(new SingleEvent("Day" + i, base.plusDays(i), base.plusDays(i).plusHours(1),
+            "", "", true));
+      }
+      cal.addEvents(batch, true);
+      assertEquals(6, cal.size());
+      List<Event> between = cal.getEventsBetween(base, base.plusDays(6));
+      assertEquals("Existing", between.get(0).getName());
+      assertEquals("Day1", between.get(1).getName());
+      assertEquals("Day5", between.get(5).getName());
+
+      List<Event> clashesWithStored = new ArrayList<>();
+      clashesWithStored.add(new SingleEvent("Free", base.plusDays(10), base.plusDays(10).plusHours(1),
+          "", "", true));
+      clashesWithStored.add(new SingleEvent("Clash", base.minusMinutes(30), base.plusMinutes(5),
+          "", "", true));
+      List<Event> clashesWithEachOther = new ArrayList<>();
+      clashesWithEachOther.add(new SingleEvent("A", base.plusDays(20), base.plusDays(20).plusHours(2),
+          "", "", true));
+      clashesWithEachOther.add(new SingleEvent("B", base.plusDays(20).plusHours(1),
+          base.plusDays(20).plusHours(3), "", "", true));
+      for (List<Event> rejected : List.of(clashesWithStored, clashesWithEachOther)) {
+        boolean declined = false;
+        try {
+          cal.addEvents(rejected, true);
+        } catch (Exception e) {
+          declined = true;
+        }
+        assertTrue(declined);
+        assertEquals(6, cal.size());
+      }
+    }
+  }
+
+  /** Tests that free/busy merges overlapping and touching events and reports the gaps. */
+  @Test
+  public void testFreeBusyCoalescesEvents() throws Exception {
+    controller.createSingleEvent("A", "2025-06-02T09:00", "2025-06-02T10:00", "", "", true, false);
+    controller.createSingleEvent("B", "2025-06-02T09:30", "2025-06-02T11:00", "", "", true, false);
+    controller.createSingleEvent("C", "2025-06-02T11:00", "2025-06-02T11:30", "", "", true, false);
+    controller.createSingleEvent("D", "2025-06-02T14:00", "2025-06-02T19:00", "", "", true, false);
+    FreeBusy freeBusy = defaultCal.freeBusy(
+        LocalDateTime.of(2025, 6, 2, 8, 0), LocalDateTime.of(2025, 6, 2, 18, 0));
+    assertEquals(2, freeBusy.getBusy().size());
+    assertEquals(LocalDateTime.of(2025, 6, 2, 9, 0), freeBusy.getBusy().get(0).getStart());
+    assertEquals(LocalDateTime.of(2025, 6, 2, 11, 30), freeBusy.getBusy().get(0).getEnd());
+    assertEquals(LocalDateTime.of(2025, 6, 2, 18, 0), freeBusy.getBusy().get(1).getEnd());
+    assertEquals(2, freeBusy.getFree().size());
+    assertEquals(LocalDateTime.of(2025, 6, 2, 8, 0), freeBusy.getFree().get(0).getStart());
+    assertEquals(LocalDateTime.of(2025, 6, 2, 8, 59), freeBusy.getFree().get(0).getEnd());
+    assertEquals(LocalDateTime.of(2025, 6, 2, 11, 31), freeBusy.getFree().get(1).getStart());
+    assertEquals(LocalDateTime.of(2025, 6, 2, 13, 59), freeBusy.getFree().get(1).getEnd());
+
+    String result = CommandFactory.process(
+        "show freebusy from 2025-06-02T08:00 to 2025-06-02T18:00", controller).execute();
+    assertTrue(result.contains("Free (2025-06-02T08:00 to 2025-06-02T08:59)"));
+    assertTrue(result.contains("Busy (2025-06-02T09:00 to 2025-06-02T11:30)"));
+    assertTrue(result.contains("Free (2025-06-02T11:31 to 2025-06-02T13:59)"));
+  }
+
+  /** Tests that common slots avoid every calendar's events and respect working hours. */
+  @Test
+  public void testFindCommonSlotsAcrossCalendars() throws Exception {
+    controller.createCalendar("Alice", "UTC");
+    controller.createCalendar("Bob", "UTC");
+    controller.useCalendar("Alice");
+    controller.createSingleEvent("Standup", "2025-06-02T09:00", "2025-06-02T10:00", "", "", true, false);
+    controller.createSingleEvent("Review", "2025-06-02T13:00", "2025-06-02T17:00", "", "", true, false);
+    controller.useCalendar("Bob");
+    controller.createSingleEvent("Focus", "2025-06-02T09:30", "2025-06-02T12:00", "", "", true, false);
+
+    String result = CommandFactory.process("show slots 60 for Alice,Bob from 2025-06-02T00:00 "
+        + "to 2025-06-04T23:59 between 09:00 and 17:00 limit 3", controller).execute();
+    String[] lines = result.split("\n");
+    assertEquals(4, lines.length);
+    assertEquals(" - 2025-06-03T09:00 to 2025-06-03T10:00", lines[1]);
+    assertEquals(" - 2025-06-03T10:00 to 2025-06-03T11:00", lines[2]);
+    assertEquals(" - 2025-06-03T11:00 to 2025-06-03T12:00", lines[3]);
+
+    CalendarManager manager = new CalendarManager();
+    manager.createCalendar("Alice", "UTC");
+    manager.createCalendar("Bob", "UTC");
+    manager.getCalendar("Alice").addEvent(new SingleEvent("Standup",
+        LocalDateTime.of(2025, 6, 2, 9, 0), LocalDateTime.of(2025, 6, 2, 10, 0), "", "", true), true);
+    manager.getCalendar("Bob").addEvent(new SingleEvent("Focus",
+        LocalDateTime.of(2025, 6, 2, 9, 30), LocalDateTime.of(2025, 6, 2, 12, 0), "", "", true), true);
+    List<TimeSlot> slots = manager.findCommonSlots(List.of("Alice", "Bob"),
+        LocalDateTime.of(2025, 6, 2, 8, 0), LocalDateTime.of(2025, 6, 2, 18, 0), 30, 3, null, null);
+    assertEquals(3, slots.size());
+    assertEquals(LocalDateTime.of(2025, 6, 2, 8, 0), slots.get(0).getStart());
+    assertEquals(LocalDateTime.of(2025, 6, 2, 12, 1), slots.get(1).getStart());
+    assertEquals(LocalDateTime.of(2025, 6, 2, 12, 31), slots.get(2).getStart());
+    manager.getCalendar("Alice").addEvent(new SingleEvent("Booked", slots.get(1).getStart(),
+        slots.get(1).getEnd(), "", "", true), true);
+  }
+
+  /** Tests that busy bitmaps agree with the indexes and stay in step with inserts. */
+  @Test
+  public void testBusyBitmapMatchesIndexedLookups() throws Exception {
+    controller.createSingleEvent("Late", "2025-06-02T22:00", "2025-06-03T01:30", "", "", true, false);
+    String result = CommandFactory.process(
+        "edit calendar --name Default --property busybitmap true", controller).execute();
+    assertTrue(result.contains("busy bitmap on: 2 days"));
+    assertTrue(defaultCal.isBusy(LocalDateTime.of(2025, 6, 2, 23, 59)));
+    assertTrue(defaultCal.isBusy(LocalDateTime.of(2025, 6, 3, 1, 30)));
+    assertFalse(defaultCal.isBusy(LocalDateTime.of(2025, 6, 3, 1, 31)));
+
+    Set<DayOfWeek> days = EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY);
+    defaultCal.addSeries(new RecurringEvent("Gym", LocalDateTime.of(2025, 6, 9, 7, 0),
+        LocalDateTime.of(2025, 6, 9, 8, 0), "", "", true, days, 4), true);
+    assertTrue(defaultCal.isBusy(LocalDateTime.of(2025, 6, 18, 7, 30)));
+    assertFalse(defaultCal.isBusy(LocalDateTime.of(2025, 6, 19, 7, 30)));
+    assertTrue(defaultCal.busyBitmapReport().contains("6 days"));
+
+    Calendar plain = new Calendar("Plain", ZoneId.of("UTC"));
+    plain.addEvent(new SingleEvent("Late", LocalDateTime.of(2025, 6, 2, 22, 0),
+        LocalDateTime.of(2025, 6, 3, 1, 30), "", "", true), true);
+    plain.addSeries(new RecurringEvent("Gym", LocalDateTime.of(2025, 6, 9, 7, 0),
+        LocalDateTime.of(2025, 6, 9, 8, 0), "", "", true, days, 4), true);
+    LocalDateTime t = LocalDateTime.of(2025, 6, 2, 0, 0);
+    for (int i = 0; i < 20 * 24 * 4; i++, t = t.plusMinutes(15)) {
+      assertEquals(plain.isBusy(t), defaultCal.isBusy(t));
+    }
+    defaultCal.setBusyBitmap(false);
+    assertEquals("busy bitmap off", defaultCal.busyBitmapReport());
+  }
+
+  /** Tests that stored events get stable ids that find them directly, series included. */
+  @Test
+  public void testEventIdsAssignedOnInsert() throws Exception {
+    for (StorageEngine engine : StorageEngine.values()) {
+      Calendar cal = new Calendar("Ids", ZoneId.of("UTC"), engine.create(new StringDictionary()));
+      LocalDateTime base = LocalDateTime.of(2025, 7, 7, 9, 0);
+      long first = cal.addEvent(new SingleEvent("Twin", base, base.plusHours(1), "", "", true), false);
+      long second = cal.addEvent(new SingleEvent("Twin", base, base.plusHours(1), "", "", true), false);
+      assertTrue(first != second);
+      Set<DayOfWeek> days = EnumSet.of(DayOfWeek.TUESDAY, DayOfWeek.THURSDAY);
+      long seriesId = cal.addSeries(new RecurringEvent("Class", base.plusDays(1),
+          base.plusDays(1).plusHours(1), "", "", true, days, 4), true);
+      assertEquals(second + 1, seriesId);
+      assertEquals(LocalDateTime.of(2025, 7, 10, 9, 0), cal.findEventById(seriesId + 1).getStart());
+      assertEquals(seriesId + 3, cal.findEventById(seriesId + 3).getId());
+      assertNull(cal.findEventById(seriesId + 4));
+
+      cal.editSingleEvent("location", "Class", LocalDateTime.of(2025, 7, 15, 9, 0),
+          LocalDateTime.of(2025, 7, 15, 10, 0), "Lab");
+      Event edited = cal.findEventById(seriesId + 2);
+      assertEquals("Lab", edited.getLocation());
+      assertEquals(LocalDateTime.of(2025, 7, 15, 9, 0), edited.getStart());
+      assertEquals("Twin", cal.findEventById(first).getName());
+    }
+
+    String result = CommandFactory.process(
+        "create event Sync from 2025-07-01T09:00 to 2025-07-01T10:00", controller).execute();
+    assertTrue(result.endsWith("(id 1)"));
+    controller.createCalendar("Target", "UTC");
+    result = CommandFactory.process(
+        "copy events on 2025-07-01 --target Target to 2025-08-01T09:00", controller).execute();
+    assertTrue(result.contains("(id 1)"));
+  }
+
+  /** Tests that query cursors page through events in start order, ties and series included. */
+  @Test
+  public void testEventCursorMatchesListQueries() throws Exception {
+    for (StorageEngine engine : StorageEngine.values()) {
+      Calendar cal = new Calendar("Cursor", ZoneId.of("UTC"), engine.create(new StringDictionary()));
+      LocalDateTime base = LocalDateTime.of(2025, 1, 1, 9, 0);
+      for (int i = 0; i < 700; i++) {
+        LocalDateTime start = base.plusHours(i % 3 == 0 ? 0 : i);
+        cal.addEvent(new SingleEvent("E" + i, start, start.plusMinutes(30), "", "", true), false);
+      }
+      cal.addSeries(new RecurringEvent("Daily", base.minusDays(2), base.minusDays(2).plusHours(1),
+          "", "", true, EnumSet.allOf(DayOfWeek.class), 60), false);
+      LocalDateTime from = base.minusDays(1);
+      LocalDateTime to = base.plusDays(40);
+      List<Event> expected = cal.getEventsBetween(from, to);
+      List<Event> streamed = new ArrayList<>();
+      cal.iterateBetween(from, to).forEachRemaining(streamed::add);
+      assertEquals(expected.size(), streamed.size());
+      Set<Long> ids = new HashSet<>();
+      for (int i = 0; i < streamed.size(); i++) {
+        assertEquals(expected.get(i).getStart(), streamed.get(i).getStart());
+        assertTrue(ids.add(streamed.get(i).getId()));
+      }
+      List<Event> onDay = new ArrayList<>();
+      cal.iterateOn(LocalDate.of(2025, 1, 1)).forEachRemaining(onDay::add);
+      assertEquals(cal.getEventsOn(LocalDate.of(2025, 1, 1)).size(), onDay.size());
+    }
+    controller.createSingleEvent("Streamed", "2025-02-03T10:00", "2025-02-03T11:00", "", "", true, false);
+    StringBuilder out = new StringBuilder();
+    ((StreamingCommand) CommandFactory.process("print events on 2025-02-03", controller)).execute(out);
+    assertEquals(controller.getFormattedEventsOn("2025-02-03"), out.toString());
+    assertTrue(out.toString().contains("Streamed (10:00 to 11:00)"));
+  }
+
+  /** Tests that parallel range streams see the same events as the sequential query. */
+  @Test
+  public void testParallelStreamMatchesSequentialQuery() throws Exception {
+    for (StorageEngine engine : StorageEngine.values()) {
+      Calendar cal = new Calendar("Scan", ZoneId.of("UTC"), engine.create(new StringDictionary()));
+      LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+      List<Event> batch = new ArrayList<>();
+      for (int i = 0; i < 5000; i++) {
+        LocalDateTime start = base.plusMinutes(97L * i);
+        batch.add(new SingleEvent("E" + i, start, start.plusMinutes(45 + i % 200), "", "", true));
+      }
+      cal.addEvents(batch, false);
+      cal.addSeries(new RecurringEvent("Daily", base, base.plusHours(1), "", "", true,
+          EnumSet.allOf(DayOfWeek.class), 300), false);
+      LocalDateTime from = base.plusDays(3).plusMinutes(20);
+      LocalDateTime to = base.plusDays(250);
+      List<Event> expected = cal.getEventsBetween(from, to);
+      long expectedMinutes = 0;
+      for (Event e : expected) {
+        expectedMinutes += Duration.between(e.getStart(), e.getEnd()).toMinutes();
+      }
+      try (Stream<Event> events = cal.streamBetween(from, to)) {
+        assertEquals(expectedMinutes, events.parallel()
+            .mapToLong(e -> Duration.between(e.getStart(), e.getEnd()).toMinutes())
+            .sum());
+      }
+      try (Stream<Event> events = cal.streamBetween(from, to)) {
+        List<Event> ordered = events.parallel().collect(Collectors.toList());
+        assertEquals(expected.size(), ordered.size());
+        for (int i = 0; i < ordered.size(); i++) {
+          assertEquals(expected.get(i).getStart(), ordered.get(i).getStart());
+        }
+      }
+      cal.addEvent(new SingleEvent("After", base.plusYears(2), base.plusYears(2).plusHours(1),
+          "", "", true), true);
+    }
+  }
+
+  /** Tests that series edits change the rule, detaching or splitting only where needed. */
+  @Test
+  public void testSeriesEditsKeepRulesAndIds() throws Exception {
+    Calendar cal = new Calendar("Rules", ZoneId.of("UTC"));
+    LocalDateTime base = LocalDateTime.of(2025, 1, 6, 9, 0);
+    RecurringEvent series = new RecurringEvent("Standup", base, base.plusMinutes(15), "", "",
+        true, EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY, DayOfWeek.FRIDAY), 1000);
+    long first = cal.addSeries(series, false);
+    assertEquals(1000, cal.editEvents("name", "Standup", "Sync"));
+    assertEquals(1000, cal.size());
+    LocalDateTime tenth = LocalDateTime.of(2025, 1, 27, 9, 0);
+    assertTrue(cal.editSingleEvent("location", "Sync", tenth, tenth.plusMinutes(15), "Lab"));
+    assertEquals(1000, cal.size());
+    Event detached = cal.findEventById(first + 9);
+    assertEquals("Lab", detached.getLocation());
+    assertEquals(tenth, detached.getStart());
+    assertEquals(1, cal.getEventsOn(tenth.toLocalDate()).size());
+    LocalDateTime middle = LocalDateTime.of(2027, 3, 3, 0, 0);
+    int index = series.firstIndexFrom(middle);
+    assertEquals(1000 - index, cal.editEventsFrom("description", "Sync", middle, "Moved"));
+    assertEquals(1000, cal.size());
+    assertEquals("", cal.findEventById(first + index - 1).getDescription());
+    assertEquals("Moved", cal.findEventById(first + index).getDescription());
+    assertEquals(first + 999, cal.findEventById(first + 999).getId());
+    assertEquals(1000, cal.editEvents("location", "Sync", "Room1"));
+    assertEquals("Room1", cal.findEventById(first + 9).getLocation());
+    assertEquals("Room1", cal.findEventById(first + 999).getLocation());
+    List<Event> all = cal.getEventsBetween(base, base.plusYears(10));
+    assertEquals(1000, all.size());
+    assertTrue(cal.isBusy(tenth.plusMinutes(5)));
+  }
+
+  /** Tests that occurrences share their series payload until one of them is edited. */
+  @Test
+  public void testOccurrencesSharePayloadUntilEdited() {
+    RecurringEvent series = new RecurringEvent("Gym", LocalDateTime.of(2025, 3, 3, 7, 0),
+        LocalDateTime.of(2025, 3, 3, 8, 0), "Legs", "Club", true,
+        EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.THURSDAY), 6);
+    List<SingleEvent> instances = series.getEventInstances();
+    assertSame(series.getPayload(), instances.get(0).getPayload());
+    assertSame(instances.get(0).getPayload(), instances.get(5).getPayload());
+    instances.get(2).setLocation("Park");
+    assertEquals("Park", instances.get(2).getLocation());
+    assertEquals("Club", instances.get(3).getLocation());
+    assertEquals("Club", series.getLocation());
+    assertSame(series.getPayload(), instances.get(3).getPayload());
+  }
+
+  /** Tests that events keep their times as epoch minutes and rebuild date-times on request. */
+  @Test
+  public void testEventTimesAreEpochMinutes() throws Exception {
+    SingleEvent event = new SingleEvent("Call", LocalDateTime.of(1969, 12, 31, 23, 30),
+        LocalDateTime.of(1970, 1, 1, 0, 15), "", "", true);
+    assertEquals(-30, event.getStartMinute());
+    assertEquals(15, event.getEndMinute());
+    assertEquals(LocalDateTime.of(1969, 12, 31, 23, 30), event.getStart());
+    Calendar cal = new Calendar("Minutes", ZoneId.of("UTC"));
+    cal.addEvent(event, true);
+    assertTrue(cal.isBusy(LocalDateTime.of(1970, 1, 1, 0, 15)));
+    assertFalse(cal.isBusy(LocalDateTime.of(1970, 1, 1, 0, 16)));
+  }
+
+  /** Tests that snapshots taken while series are being split keep every occurrence. */
+  @Test(timeout = 60000)
+  public void testSnapshotDuringSeriesSplits() throws Exception {
+    Calendar cal = new Calendar("Busy", ZoneId.of("UTC"));
+    LocalDateTime base = LocalDateTime.of(2025, 1, 1, 8, 0);
+    for (int i = 0; i < 100; i++) {
+      cal.addSeries(new RecurringEvent("S" + i, base.plusMinutes(i), base.plusMinutes(i + 1),
+          "", "", true, EnumSet.allOf(DayOfWeek.class), 200), false);
+    }
+    int expected = cal.size();
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    Path file = Files.createTempFile("calendars", ".snap");
+    try {
+      Future<?> splitter = pool.submit(() -> {
+        for (int day = 190; day > 0; day -= 10) {
+          for (int i = 0; i < 100; i++) {
+            cal.editEventsFrom("description", "S" + i, base.plusDays(day).plusMinutes(i),
+                "Part " + day);
+          }
+        }
+        return null;
+      });
+      while (!splitter.isDone()) {
+        CalendarSnapshot.write(Collections.singletonList(cal), file);
+        assertEquals(expected,
+            CalendarSnapshot.read(file, new StringDictionary()).get(0).size());
+      }
+      splitter.get();
+    } finally {
+      pool.shutdown();
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /** Tests that a snapshot restores calendars, events, series rules and ids. */
+  @Test
+  public void testSnapshotRoundTrip() throws Exception {
+    controller.createRecurringEventOccurrences(
+        "Class", "2025-06-02T09:00", "2025-06-02T10:00", "Intro", "Room1", true, "MW", 20, false);
+    controller.editSingleEvent(
+        "location", "Class", "2025-06-04T09:00", "2025-06-04T10:00", "Room2");
+    controller.editEventsFrom("description", "Class", "2025-06-16T09:00", "Advanced");
+    controller.createSingleEvent(
+        "Lunch", "2025-06-03T12:00", "2025-06-03T13:00", "", null, false, false);
+    controller.createCalendar("Archive", "UTC", "columnar");
+    controller.editCalendar("Archive", "busybitmap", "true");
+    controller.useCalendar("Archive");
+    controller.createSingleEvent("Audit", "2025-06-05T08:00", "2025-06-05T17:00", "", "", true, false);
+    Path file = Files.createTempFile("calendars", ".snap");
+    try {
+      CommandFactory.process("save snapshot " + file, controller).execute();
+      CalendarController restored = new CalendarController(
+          new Calendar("Scratch", ZoneId.of("UTC")));
+      assertEquals("Loaded 2 calendar(s) from snapshot: " + file,
+          CommandFactory.process("load snapshot " + file, restored).execute());
+      assertEquals(controller.getFormattedEventsOn("2025-06-05"),
+          restored.getFormattedEventsOn("2025-06-05"));
+      assertEquals(controller.getBusyBitmapReport("Archive"),
+          restored.getBusyBitmapReport("Archive"));
+      controller.useCalendar("Default");
+      restored.useCalendar("Default");
+      for (String day : new String[] {"2025-06-03", "2025-06-04", "2025-06-18", "2025-07-30"}) {
+        assertEquals(controller.getFormattedEventsOn(day), restored.getFormattedEventsOn(day));
+      }
+      for (long id = 1; id <= 21; id++) {
+        Event saved = controller.findEventById(id);
+        Event loaded = restored.findEventById(id);
+        assertEquals(saved.getStart(), loaded.getStart());
+        assertEquals(saved.getLocation(), loaded.getLocation());
+        assertEquals(saved.getDescription(), loaded.getDescription());
+      }
+      assertNull(restored.findEventById(22));
+      assertEquals("id 22", restored.createSingleEvent(
+          "Later", "2025-08-01T09:00", "2025-08-01T10:00", "", "", true, false));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /** Tests that journaled commands survive a restart, compaction and a torn record. */
+  @Test
+  public void testCommandJournalRecovery() throws Exception {
+    Path dir = Files.createTempDirectory("journal");
+    try {
+      CalendarController first = new CalendarController(
+          new Calendar("Default", ZoneId.of("America/New_York")));
+      CommandJournal journal = CommandJournal.open(dir, first, 6);
+      String[] commands = {
+          "create calendar --name Work --timezone UTC",
+          "use calendar --name Work",
+          "create event Standup from 2025-05-05T09:00 to 2025-05-05T09:15 repeats MTWRF for 10 times",
+          "edit event location Standup from 2025-05-07T09:00 to 2025-05-07T09:15 with Lab",
+          "create event Review from 2025-05-06T14:00 to 2025-05-06T15:00"};
+      for (String command : commands) {
+        CommandFactory.process(command, first).execute();
+      }
+      ExecutorService pool = Executors.newFixedThreadPool(4);
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        String command = "create event Slot" + i + " from 2025-06-0" + (i + 1) + "T10:00 to 2025-06-0"
+            + (i + 1) + "T11:00";
+        results.add(pool.submit(() -> CommandFactory.process(command, first).execute()));
+      }
+      for (Future<String> result : results) {
+        result.get();
+      }
+      pool.shutdown();
+      assertTrue(journal.getGeneration() >= 2);
+      CommandFactory.process("edit events location Standup Hall", first).execute();
+      journal.close();
+      Files.write(dir.resolve("commands.journal"), new byte[] {0, 0, 0, 40, 1, 2},
+          StandardOpenOption.APPEND);
+
+      CalendarController second = new CalendarController(
+          new Calendar("Default", ZoneId.of("America/New_York")));
+      CommandJournal reopened = CommandJournal.open(dir, second, 6);
+      assertEquals(journal.getGeneration(), reopened.getGeneration());
+      for (String day : new String[] {"2025-05-06", "2025-05-07", "2025-05-16", "2025-06-08"}) {
+        assertEquals(first.getFormattedEventsOn(day), second.getFormattedEventsOn(day));
+      }
+      assertTrue(second.getFormattedEventsOn("2025-05-07").contains("Hall"));
+      assertTrue(second.getFormattedEventsOn("2025-05-16").contains("Hall"));
+      assertEquals(first.getActiveCalendarName(), second.getActiveCalendarName());
+      CommandFactory.process(
+          "create event Late from 2025-07-01T10:00 to 2025-07-01T11:00", second).execute();
+      reopened.close();
+      CalendarController third = new CalendarController(
+          new Calendar("Default", ZoneId.of("America/New_York")));
+      CommandJournal.open(dir, third, 6).close();
+      assertTrue(third.getFormattedEventsOn("2025-07-01").contains("Late"));
+    } finally {
+      try (Stream<Path> files = Files.walk(dir)) {
+        files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    }
+  }
+
+  /** Tests that the CSV exporter escapes quotes and encodes dates like the date formatters. */
+  @Test
+  public void testExportEscapesAndFormatsDates() throws Exception {
+    controller.createSingleEvent("Say \"hi\"", "2024-02-29T07:05", "2024-03-01T00:00",
+        "Caf\u00e9, bar", null, false, false);
+    controller.createSingleAllDayEvent("Holiday", "1999-12-31", "", "", true, false);
+    String filePath = controller.exportCalendar("test_export_fast.csv");
+    try {
+      List<String> lines = Files.readAllLines(Paths.get(filePath), StandardCharsets.UTF_8);
+      assertEquals(3, lines.size());
+      assertEquals("\"Holiday\",\"12/31/1999\",\"\",\"12/31/1999\",\"\",\"True\",\"\",\"\","
+          + "\"False\"", lines.get(1));
+      assertEquals("\"Say \"\"hi\"\"\",\"02/29/2024\",\"07:05\",\"03/01/2024\",\"00:00\","
+          + "\"False\",\"Caf\u00e9, bar\",\"\",\"True\"", lines.get(2));
+      assertTrue(controller.getLastExportReport().startsWith("2 events in "));
+      assertTrue(controller.getLastExportReport().endsWith(" events/sec)"));
+    } finally {
+      Files.deleteIfExists(Paths.get(filePath));
+    }
+  }
+
+  /** Tests that changes are tracked per event id, including series instances and detaches. */
+  @Test
+  public void testCollectChangesSinceTracksAddsAndEdits() throws Exception {
+    for (StorageEngine engine : StorageEngine.values()) {
+      Calendar cal = new Calendar("Changes", ZoneId.of("UTC"), engine.create(new StringDictionary()));
+      LocalDateTime base = LocalDateTime.of(2025, 1, 6, 9, 0);
+      cal.addEvent(new SingleEvent("One", base.minusDays(1), base.minusDays(1).plusHours(1),
+          "", "", true), true);
+      cal.addSeries(new RecurringEvent("Standup", base, base.plusMinutes(15), "", "", true,
+          EnumSet.of(DayOfWeek.MONDAY), 10), true);
+      List<Event> changed = new ArrayList<>();
+      long seq = cal.collectChangesSince(0, changed);
+      assertEquals(seq, cal.currentChangeSequence());
+      assertEquals(11, changed.size());
+      assertEquals("One", changed.get(0).getName());
+      changed.clear();
+      assertEquals(seq, cal.collectChangesSince(seq, changed));
+      assertTrue(changed.isEmpty());
+      LocalDateTime third = base.plusWeeks(2);
+      assertTrue(cal.editSingleEvent("location", "Standup", third, third.plusMinutes(15), "Lab"));
+      long afterDetach = cal.collectChangesSince(seq, changed);
+      assertEquals(1, changed.size());
+      assertEquals("Lab", changed.get(0).getLocation());
+      changed.clear();
+      assertEquals(10, cal.editEvents("description", "Standup", "Daily"));
+      cal.collectChangesSince(afterDetach, changed);
+      assertEquals(10, changed.size());
+      for (Event event : changed) {
+        assertEquals("Daily", event.getDescription());
+      }
+    }
+  }
+
+  /** Tests that incremental exports write only what changed and keep a manifest. */
+  @Test
+  public void testExportSinceLastWritesOnlyChanges() throws Exception {
+    controller.createSingleEvent("Alpha", "2025-04-09T09:00", "2025-04-09T10:00", "", "", true,
+        false);
+    controller.createSingleEvent("Beta", "2025-04-10T09:00", "2025-04-10T10:00", "", "", true,
+        false);
+    Path csv = Paths.get("test_export_delta.csv");
+    Path manifest = Paths.get("test_export_delta.csv.manifest");
+    try {
+      String first = CommandFactory.process("export cal test_export_delta.csv --since-last",
+          controller).execute();
+      assertTrue(first.contains("2 events (all: no manifest for this calendar)"));
+      assertTrue(Files.exists(manifest));
+      controller.editEvents("location", "Beta", "Room 2");
+      controller.createSingleEvent("Gamma", "2025-04-08T09:00", "2025-04-08T10:00", "", "",
+          true, false);
+      CommandFactory.process("export cal test_export_delta.csv --since-last", controller)
+          .execute();
+      List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+      assertEquals(3, lines.size());
+      assertTrue(lines.get(1).startsWith("\"Gamma\""));
+      assertTrue(lines.get(2).startsWith("\"Beta\"") && lines.get(2).contains("\"Room 2\""));
+      String again = CommandFactory.process("export cal test_export_delta.csv --since-last",
+          controller).execute();
+      assertTrue(again.contains("0 events changed since sequence"));
+      assertEquals(1, Files.readAllLines(csv, StandardCharsets.UTF_8).size());
+      CommandFactory.process("export cal test_export_delta.csv", controller).execute();
+      assertEquals(4, Files.readAllLines(csv, StandardCharsets.UTF_8).size());
+    } finally {
+      Files.deleteIfExists(csv);
+      Files.deleteIfExists(manifest);
+    }
+  }
+
+  /** Tests that a windowed export writes only the events overlapping the window. */
+  @Test
+  public void testExportWindowWritesOnlyEventsInRange() throws Exception {
+    controller.createSingleEvent("March", "2025-03-15T09:00", "2025-03-15T10:00", "", "", true,
+        false);
+    controller.createSingleEvent("Overnight", "2025-03-31T22:00", "2025-04-01T02:00", "", "",
+        true, false);
+    controller.createSingleEvent("April", "2025-04-10T09:00", "2025-04-10T10:00", "", "", true,
+        false);
+    controller.createSingleEvent("June", "2025-06-30T23:00", "2025-06-30T23:30", "", "", true,
+        false);
+    controller.createSingleEvent("July", "2025-07-01T00:00", "2025-07-01T01:00", "", "", true,
+        false);
+    Path csv = Paths.get("test_export_window.csv");
+    try {
+      String result = CommandFactory.process(
+          "export cal test_export_window.csv from 2025-04-01 to 2025-06-30", controller).execute();
+      assertTrue(result.contains("3 events between 2025-04-01T00:00 and 2025-06-30T23:59"));
+      List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+      assertEquals(4, lines.size());
+      assertTrue(lines.get(1).startsWith("\"Overnight\""));
+      assertTrue(lines.get(2).startsWith("\"April\""));
+      assertTrue(lines.get(3).startsWith("\"June\""));
+    } finally {
+      Files.deleteIfExists(csv);
+    }
+  }
+
+  /** Tests that an export window ending before it starts is rejected. */
+  @Test(expected = IllegalArgumentException.class)
+  public void testExportWindowRejectsReversedRange() throws Exception {
+    CommandFactory.process("export cal test_export_window.csv from 2025-06-30 to 2025-04-01",
+        controller).execute();
+  }
+
+  /** Tests that an unclosed, partly consumed stream does not block writers. */
+  @Test(timeout = 5000)
+  public void testOpenStreamDoesNotBlockWriters() throws Exception {
+    Calendar cal = new Calendar("Open", ZoneId.of("UTC"));
+    LocalDateTime base = LocalDateTime.of(2025, 1, 1, 9, 0);
+    for (int i = 0; i < 2000; i++) {
+      cal.addEvent(new SingleEvent("E" + i, base.plusHours(i), base.plusHours(i).plusMinutes(30),
+          "", "", true), false);
+    }
+    Iterator<Event> events = cal.streamBetween(base, base.plusYears(1)).iterator();
+    assertEquals("E0", events.next().getName());
+    cal.addEvent(new SingleEvent("Late", base.minusDays(1), base.minusDays(1).plusHours(1),
+        "", "", true), true);
+    assertEquals(2001, cal.size());
+    assertEquals("E1", events.next().getName());
+  }
+
+  /** Tests that a damaged record followed by intact ones fails recovery instead of truncating. */
+  @Test
+  public void testCommandJournalRejectsCorruptionBeforeTail() throws Exception {
+    Path dir = Files.createTempDirectory("journal");
+    try {
+      CalendarController first = new CalendarController(
+          new Calendar("Default", ZoneId.of("America/New_York")));
+      CommandJournal journal = CommandJournal.open(dir, first);
+      for (int i = 1; i <= 3; i++) {
+        CommandFactory.process("create event E" + i + " from 2025-05-0" + i + "T09:00 to 2025-05-0"
+            + i + "T10:00", first).execute();
+      }
+      journal.close();
+      Path file = dir.resolve("commands.journal");
+      byte[] bytes = Files.readAllBytes(file);
+      // Header, first record's length and checksum, its type, then a byte of its command.
+      bytes[12 + 8 + 1 + 3] ^= 1;
+      Files.write(file, bytes);
+      boolean rejected = false;
+      try {
+        CommandJournal.open(dir, new CalendarController(
+            new Calendar("Default", ZoneId.of("America/New_York"))));
+      } catch (IOException e) {
+        rejected = e.getMessage().contains("Corrupt journal record");
+      }
+      assertTrue(rejected);
+      assertEquals(bytes.length, Files.size(file));
+    } finally {
+      try (Stream<Path> files = Files.walk(dir)) {
+        files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    }
+  }
+
+  /** Tests that columnar calendars encode their strings with the manager's shared dictionary. */
+  @Test
+  public void testColumnarCalendarsShareManagerDictionary() throws Exception {
+    controller.createCalendar("Archive", "UTC", "columnar");
+    controller.createSingleEvent("Retro", "2025-08-01T10:00", "2025-08-01T11:00", "Notes",
+        "Room9", true, false);
+    controller.useCalendar("Archive");
+    controller.createSingleEvent(new String("Retro"), "2025-08-02T10:00", "2025-08-02T11:00",
+        new String("Notes"), new String("Room9"), true, false);
+    StringDictionary strings = controller.getStringDictionary();
+    assertEquals(3, strings.size());
+    assertTrue(controller.getFormattedEventsOn("2025-08-02").contains("Retro"));
+    CalendarManager manager = new CalendarManager();
+    manager.createCalendar("Columns", "UTC", StorageEngine.COLUMNAR);
+    assertSame(manager.getStringDictionary(),
+        manager.getCalendar("Columns").getStringDictionary());
+  }
+
+  /** Tests that an empty calendar yields as many slots as the limit asks for. */
+  @Test
+  public void testFindSlotsInEmptyCalendarHonorsLimit() {
+    CalendarManager manager = new CalendarManager();
+    manager.createCalendar("Empty", "UTC");
+    LocalDateTime from = LocalDateTime.of(2025, 6, 2, 8, 0);
+    List<TimeSlot> slots = manager.findCommonSlots(List.of("Empty"), from,
+        from.plusDays(1), 45, 3, null, null);
+    assertEquals(3, slots.size());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(from.plusMinutes(45L * i), slots.get(i).getStart());
+      assertEquals(from.plusMinutes(45L * (i + 1)), slots.get(i).getEnd());
+    }
+    List<TimeSlot> working = manager.findCommonSlots(List.of("Empty"), from,
+        from.plusDays(2), 60, 10, LocalTime.of(9, 0), LocalTime.of(12, 0));
+    assertEquals(6, working.size());
+    assertEquals(LocalDateTime.of(2025, 6, 3, 11, 0), working.get(5).getStart());
+  }
+
+  /** Tests that free and busy intervals never share a minute and agree with isBusy. */
+  @Test
+  public void testFreeAndBusyDoNotOverlap() throws Exception {
+    Calendar cal = new Calendar("Gaps", ZoneId.of("UTC"));
+    LocalDateTime base = LocalDateTime.of(2025, 6, 2, 8, 0);
+    cal.addEvent(new SingleEvent("A", base.plusMinutes(30), base.plusMinutes(60), "", "", true),
+        true);
+    cal.addEvent(new SingleEvent("B", base.plusMinutes(61), base.plusMinutes(90), "", "", true),
+        true);
+    cal.addEvent(new SingleEvent("C", base.plusMinutes(200), base.plusMinutes(260), "", "", true),
+        true);
+    LocalDateTime end = base.plusMinutes(300);
+    FreeBusy freeBusy = cal.freeBusy(base, end);
+    Set<LocalDateTime> busyMinutes = new HashSet<>();
+    for (TimeSlot slot : freeBusy.getBusy()) {
+      for (LocalDateTime t = slot.getStart(); !t.isAfter(slot.getEnd()); t = t.plusMinutes(1)) {
+        assertTrue(busyMinutes.add(t));
+      }
+    }
+    Set<LocalDateTime> freeMinutes = new HashSet<>();
+    for (TimeSlot slot : freeBusy.getFree()) {
+      for (LocalDateTime t = slot.getStart(); !t.isAfter(slot.getEnd()); t = t.plusMinutes(1)) {
+        assertTrue(freeMinutes.add(t));
+        assertFalse(busyMinutes.contains(t));
+      }
+    }
+    for (LocalDateTime t = base; !t.isAfter(end); t = t.plusMinutes(1)) {
+      assertEquals(cal.isBusy(t), busyMinutes.contains(t));
+      assertTrue(busyMinutes.contains(t) || freeMinutes.contains(t));
+    }
+  }
+
+  /** Tests that columnar queries and edits match the indexed store across merges and long events. */
+  @Test
+  public void testColumnarStoreMatchesIndexedAcrossMerges() throws Exception {
+    Calendar indexed = new Calendar("I", ZoneId.of("UTC"));
+    Calendar columnar = new Calendar("C", ZoneId.of("UTC"),
+        StorageEngine.COLUMNAR.create(new StringDictionary()));
+    Random random = new Random(7);
+    LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+    for (Calendar cal : List.of(indexed, columnar)) {
+      cal.addEvent(new SingleEvent("Sabbatical", base.plusDays(10), base.plusDays(200), "", "",
+          true), false);
+    }
+    for (int i = 0; i < 1500; i++) {
+      LocalDateTime start = base.plusMinutes(random.nextInt(365 * 24 * 60));
+      LocalDateTime end = start.plusMinutes(15 + random.nextInt(600));
+      String name = "N" + random.nextInt(20);
+      for (Calendar cal : List.of(indexed, columnar)) {
+        cal.addEvent(new SingleEvent(name, start, end, "", "", true), false);
+      }
+      if (i % 500 == 499) {
+        List<Event> batch = new ArrayList<>();
+        for (int b = 0; b < 50; b++) {
+          LocalDateTime s2 = base.plusMinutes(random.nextInt(365 * 24 * 60));
+          batch.add(new SingleEvent("B" + b % 3, s2, s2.plusMinutes(30), "", "", true));
+        }
+        indexed.addEvents(batch, false);
+        List<Event> copy = new ArrayList<>();
+        for (Event e : batch) {
+          copy.add(new SingleEvent(e.getName(), e.getStart(), e.getEnd(), "", "", true));
+        }
+        columnar.addEvents(copy, false);
+      }
+    }
+    assertEquals(indexed.editEvents("name", "N3", "Renamed"),
+        columnar.editEvents("name", "N3", "Renamed"));
+    assertEquals(indexed.editEventsFrom("location", "N4", base.plusDays(100), "Lab"),
+        columnar.editEventsFrom("location", "N4", base.plusDays(100), "Lab"));
+    assertEquals(indexed.editEventsFrom("name", "N5", base.plusDays(180), "Renamed"),
+        columnar.editEventsFrom("name", "N5", base.plusDays(180), "Renamed"));
+    assertEquals(0, columnar.editEvents("name", "N3", "Other"));
+    for (int q = 0; q < 200; q++) {
+      LocalDateTime from = base.plusMinutes(random.nextInt(370 * 24 * 60));
+      LocalDateTime to = from.plusMinutes(random.nextInt(3 * 24 * 60));
+      assertEquals(describe(indexed.getEventsBetween(from, to)),
+          describe(columnar.getEventsBetween(from, to)));
+      assertEquals(describe(indexed.getEventsOn(from.toLocalDate())),
+          describe(columnar.getEventsOn(from.toLocalDate())));
+      assertEquals(indexed.isBusy(from), columnar.isBusy(from));
+    }
+  }
+
+  private static List<String> describe(List<Event> events) {
+    List<String> described = new ArrayList<>();
+    for (Event e : events) {
+      described.add(e.getName() + "@" + e.getStart() + "-" + e.getEnd() + ":" + e.getLocation());
+    }
+    described.sort(null);
+    return described;
+  }
 }